@@ -0,0 +1,150 @@
+package project5;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point operations on a BST that holds size keys inserted in the given order.
+ * Lookups probe present keys in a random order; addRemove adds an absent key
+ * and removes it again, so the tree keeps its shape across invocations.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class BSTBenchmark {
+    private static final int PROBES = 1 << 16;
+
+    /**
+     * Returns the number of keys in the tree.
+     * 
+     * @return the number of keys
+     */
+    protected abstract int size();
+
+    /**
+     * Returns the order in which the keys are inserted.
+     * 
+     * @return the key order
+     */
+    protected abstract KeyOrder order();
+
+    private BST<Integer> tree;
+    private Integer[] presentProbes;
+    private Integer[] absentProbes;
+    private int[] indexProbes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void buildTree() {
+        tree = new BST<>();
+        for (int key : order().keys(size(), 42)) {
+            tree.add(key);
+        }
+
+        Random random = new Random(7);
+        presentProbes = new Integer[PROBES];
+        absentProbes = new Integer[PROBES];
+        indexProbes = new int[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            int index = random.nextInt(size());
+            presentProbes[i] = 2 * index;
+            absentProbes[i] = 2 * index + 1;
+            indexProbes[i] = index;
+        }
+    }
+
+    private int nextProbe() {
+        next = (next + 1) & (PROBES - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return tree.contains(presentProbes[nextProbe()]);
+    }
+
+    @Benchmark
+    public boolean containsAbsent() {
+        return tree.contains(absentProbes[nextProbe()]);
+    }
+
+    @Benchmark
+    public Integer get() {
+        return tree.get(indexProbes[nextProbe()]);
+    }
+
+    @Benchmark
+    public Integer predecessor() {
+        return tree.predecessor(presentProbes[nextProbe()]);
+    }
+
+    @Benchmark
+    public Integer successor() {
+        return tree.successor(presentProbes[nextProbe()]);
+    }
+
+    @Benchmark
+    public boolean addRemove() {
+        Integer key = absentProbes[nextProbe()];
+        return tree.add(key) & tree.remove(key);
+    }
+
+    /**
+     * Keys in random order, which build trees of logarithmic height, up to ten million keys.
+     */
+    public static class RandomOrder extends BSTBenchmark {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return KeyOrder.RANDOM;
+        }
+    }
+
+    /**
+     * Sorted and zig-zag keys, which build degenerate trees in quadratic time, so the
+     * sizes stop well below those of RandomOrder.
+     */
+    public static class DegenerateOrder extends BSTBenchmark {
+        @Param({"1000", "10000"})
+        public int size;
+
+        @Param({"SORTED", "ZIGZAG"})
+        public KeyOrder order;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package project5;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building a whole BST with add and emptying it again with remove. Each
+ * invocation handles every key once, so the results are per tree, not per key.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public abstract class BSTBuildBenchmark {
+    /**
+     * Returns the number of keys in the tree.
+     * 
+     * @return the number of keys
+     */
+    protected abstract int size();
+
+    /**
+     * Returns the order in which the keys are inserted.
+     * 
+     * @return the key order
+     */
+    protected abstract KeyOrder order();
+
+    private Integer[] keys;
+    private BST<Integer> fullTree;
+
+    @Setup(Level.Trial)
+    public void createKeys() {
+        int[] ints = order().keys(size(), 42);
+        keys = new Integer[size()];
+        for (int i = 0; i < size(); i++) {
+            keys[i] = ints[i];
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fillTree() {
+        fullTree = new BST<>();
+        for (Integer key : keys) {
+            fullTree.add(key);
+        }
+    }
+
+    @Benchmark
+    public BST<Integer> add() {
+        BST<Integer> tree = new BST<>();
+        for (Integer key : keys) {
+            tree.add(key);
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public BST<Integer> remove() {
+        for (Integer key : keys) {
+            fullTree.remove(key);
+        }
+        return fullTree;
+    }
+
+    /**
+     * Keys in random order, which build trees of logarithmic height, up to ten million keys.
+     */
+    public static class RandomOrder extends BSTBuildBenchmark {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return KeyOrder.RANDOM;
+        }
+    }
+
+    /**
+     * Sorted and zig-zag keys, which build degenerate trees in quadratic time, so the
+     * sizes stop well below those of RandomOrder.
+     */
+    public static class DegenerateOrder extends BSTBuildBenchmark {
+        @Param({"1000", "10000"})
+        public int size;
+
+        @Param({"SORTED", "ZIGZAG"})
+        public KeyOrder order;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package project5;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Full traversals of a BST with each of its three iterators.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class IteratorBenchmark {
+    /**
+     * Returns the number of keys in the tree.
+     * 
+     * @return the number of keys
+     */
+    protected abstract int size();
+
+    /**
+     * Returns the order in which the keys are inserted.
+     * 
+     * @return the key order
+     */
+    protected abstract KeyOrder order();
+
+    private BST<Integer> tree;
+
+    @Setup(Level.Trial)
+    public void buildTree() {
+        tree = new BST<>();
+        for (int key : order().keys(size(), 42)) {
+            tree.add(key);
+        }
+    }
+
+    @Benchmark
+    public void inorder(Blackhole blackhole) {
+        drain(tree.iterator(), blackhole);
+    }
+
+    @Benchmark
+    public void preorder(Blackhole blackhole) {
+        drain(tree.preorderIterator(), blackhole);
+    }
+
+    @Benchmark
+    public void postorder(Blackhole blackhole) {
+        drain(tree.postorderIterator(), blackhole);
+    }
+
+    private static void drain(Iterator<Integer> iterator, Blackhole blackhole) {
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    /**
+     * Keys in random order, which build trees of logarithmic height, up to ten million keys.
+     */
+    public static class RandomOrder extends IteratorBenchmark {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return KeyOrder.RANDOM;
+        }
+    }
+
+    /**
+     * Sorted and zig-zag keys, which build degenerate trees in quadratic time, so the
+     * sizes stop well below those of RandomOrder.
+     */
+    public static class DegenerateOrder extends IteratorBenchmark {
+        @Param({"1000", "10000"})
+        public int size;
+
+        @Param({"SORTED", "ZIGZAG"})
+        public KeyOrder order;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return order;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package project5;
+
+import java.util.Random;
+
+/**
+ * The order in which benchmark keys are inserted into a tree. Keys are the even
+ * numbers from 0 to 2 * (size - 1), so every odd number is a key that is absent.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public enum KeyOrder {
+    /** Ascending keys, which build a tree that leans right all the way down. */
+    SORTED,
+    /** A seeded random shuffle of the keys, which builds a tree of logarithmic height. */
+    RANDOM,
+    /** Alternating smallest and largest remaining keys, which builds a zig-zag chain. */
+    ZIGZAG;
+
+    /**
+     * Returns the keys in this order.
+     * 
+     * @param size the number of keys
+     * @param seed the seed used to shuffle RANDOM keys
+     * @return the keys in insertion order
+     */
+    public int[] keys(int size, long seed) {
+        int[] keys = new int[size];
+        switch (this) {
+            case SORTED:
+                for (int i = 0; i < size; i++) {
+                    keys[i] = 2 * i;
+                }
+                break;
+            case RANDOM:
+                for (int i = 0; i < size; i++) {
+                    keys[i] = 2 * i;
+                }
+                Random random = new Random(seed);
+                for (int i = size - 1; i > 0; i--) {
+                    int j = random.nextInt(i + 1);
+                    int temp = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = temp;
+                }
+                break;
+            case ZIGZAG:
+                int low = 0;
+                int high = size - 1;
+                for (int i = 0; i < size; i++) {
+                    keys[i] = 2 * ((i % 2 == 0) ? low++ : high--);
+                }
+                break;
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the keys as labels that sort in the same order as the numbers.
+     * 
+     * @param size the number of keys
+     * @param seed the seed used to shuffle RANDOM keys
+     * @return the labels in insertion order
+     */
+    public String[] labels(int size, long seed) {
+        int[] keys = keys(size, seed);
+        String[] labels = new String[size];
+        for (int i = 0; i < size; i++) {
+            labels[i] = String.format("%09d", keys[i]);
+        }
+        return labels;
+    }
+}
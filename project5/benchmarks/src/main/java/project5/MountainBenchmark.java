@@ -0,0 +1,155 @@
+package project5;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loading a mountain file with MountainClimb and searching it with BSTMountain.
+ * Every rest stop carries food, and some also carry rafts and axes or hold an
+ * obstacle, so most paths survive and the searches visit most of the mountain.
+ * <p>
+ * Every iteration asks the same mountain the same questions, so with the result cache
+ * on, the searches after the first one are cache hits. The searches are measured with
+ * the cache off, and the cache hits with it on.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public abstract class MountainBenchmark {
+    /**
+     * Returns the number of keys in the tree.
+     * 
+     * @return the number of keys
+     */
+    protected abstract int size();
+
+    /**
+     * Returns the order in which the keys are inserted.
+     * 
+     * @return the key order
+     */
+    protected abstract KeyOrder order();
+
+    /**
+     * Whether the mountain keeps query results, which turns repeated searches into cache
+     * hits. Parse builds its own mountain and does not depend on it.
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private File input;
+    private BSTMountain mountain;
+
+    @Setup(Level.Trial)
+    public void writeMountain() throws IOException {
+        input = File.createTempFile("mountain", ".txt");
+        Random random = new Random(11);
+        try (PrintWriter writer = new PrintWriter(input, "UTF-8")) {
+            for (String label : order().labels(size(), 42)) {
+                writer.print(label);
+                writer.print(" food");
+                if (random.nextInt(4) == 0) {
+                    writer.print(random.nextBoolean() ? " raft" : " axe");
+                }
+                if (random.nextInt(8) == 0) {
+                    writer.print(random.nextBoolean() ? " river" : " fallen tree");
+                }
+                writer.println();
+            }
+        }
+        mountain = new BSTMountain();
+        mountain.setResultCacheSize(cached ? BSTMountain.DEFAULT_RESULT_CACHE_SIZE : 0);
+        MountainClimb.loadMountainFromFile(mountain, input);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteMountain() {
+        input.delete();
+    }
+
+    @Benchmark
+    public BSTMountain parse() throws IOException {
+        BSTMountain loaded = new BSTMountain();
+        MountainClimb.loadMountainFromFile(loaded, input);
+        return loaded;
+    }
+
+    @Benchmark
+    public List<MountainPath> explore() {
+        return mountain.findSuccessfulPaths();
+    }
+
+    @Benchmark
+    public MountainPath findFirstPath() {
+        return mountain.findFirstPath();
+    }
+
+    @Benchmark
+    public List<MountainPath> findTopPaths() {
+        return mountain.findTopPaths(10);
+    }
+
+    /**
+     * Keys in random order, which build trees of logarithmic height, up to ten million keys.
+     */
+    public static class RandomOrder extends MountainBenchmark {
+        @Param({"1000", "100000", "1000000", "10000000"})
+        public int size;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return KeyOrder.RANDOM;
+        }
+    }
+
+    /**
+     * Sorted and zig-zag keys, which build degenerate trees in quadratic time, so the
+     * sizes stop well below those of RandomOrder.
+     */
+    public static class DegenerateOrder extends MountainBenchmark {
+        @Param({"1000", "10000"})
+        public int size;
+
+        @Param({"SORTED", "ZIGZAG"})
+        public KeyOrder order;
+
+        @Override
+        protected int size() {
+            return size;
+        }
+
+        @Override
+        protected KeyOrder order() {
+            return order;
+        }
+    }
+}
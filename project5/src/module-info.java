@@ -5,4 +5,5 @@
  * 
  */
 module project5 {
+    requires jdk.jfr;
 }
\ No newline at end of file
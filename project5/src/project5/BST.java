@@ -1,6 +1,14 @@
 package project5;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Stack;
@@ -14,9 +22,13 @@ import java.util.Stack;
  * @version 1.0
  * @author Majo Salgado
  */
-public class BST<E extends Comparable<E>> implements Iterable<E> {
+public class BST<E extends Comparable<E>> implements SortedTree<E> {
     protected Node root;
     private int size = 0;
+    /** Counts structural changes, so that fingers can tell when their path is stale. */
+    protected int modCount = 0;
+    private Node[] pathBuffer = newNodeArray(16);
+    private boolean selfAdjusting = false;
 
     /**
      * Constructs an empty BST.
@@ -98,25 +110,84 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
         }
     }
 
+    /**
+     * Turns self-adjusting mode on or off for this tree. In self-adjusting mode every
+     * lookup, insert and removal splays the node it reaches to the root, so elements that
+     * are accessed often stay near the top and the amortized cost of an access follows
+     * how skewed the accesses are instead of the shape the elements were added in.
+     * <p>
+     * In this mode contains, get, predecessor and successor change the shape of the tree.
+     * They must not be called by several threads at once, or while an iterator is in use.
+     * Fingers keep working but do not splay.
+     * 
+     * @param selfAdjusting true to splay accessed nodes to the root
+     */
+    public void setSelfAdjusting(boolean selfAdjusting) {
+        this.selfAdjusting = selfAdjusting;
+    }
+
+    /**
+     * Returns whether this tree splays accessed nodes to the root.
+     * 
+     * @return true if the tree is in self-adjusting mode
+     */
+    public boolean isSelfAdjusting() {
+        return selfAdjusting;
+    }
+
+    /**
+     * Finds the node containing the specified element, splaying it to the root in
+     * self-adjusting mode. If the element is not found, the last node visited is splayed.
+     * 
+     * @param e the element to find
+     * @param operation the operation the search is part of, for metrics
+     * @return the node containing the element, or null if not found
+     */
+    private Node access(E e, MountainMetrics.Operation operation) {
+        if (!selfAdjusting) {
+            return findNode(e, root, operation);
+        }
+        Node[] path = pathBuffer(height());
+        int depth = 0;
+        Node node = root;
+        Node found = null;
+        while (node != null) {
+            path[depth++] = node;
+            int cmp = e.compareTo(node.value);
+            if (cmp == 0) {
+                found = node;
+                break;
+            }
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        recordOperation(operation, depth, depth);
+        splay(path, depth);
+        return found;
+    }
+
     /**
      * Finds the node containing the specified element.
      * 
      * @param e the element to find
      * @param current the current node in the search
+     * @param operation the operation the search is part of, for metrics
      * @return the node containing the element, or null if not found
      */
-    private Node findNode(E e, Node current) {
+    private Node findNode(E e, Node current, MountainMetrics.Operation operation) {
+        int comparisons = 0;
         while (current != null) {
             int cmp = e.compareTo(current.value);
+            comparisons++;
             if (cmp < 0) {
                 current = current.left;
             } else if (cmp > 0) {
                 current = current.right;
             } else {
-                return current;
+                break;
             }
         }
-        return null;
+        recordOperation(operation, comparisons, comparisons);
+        return current;
     }
 
     /**
@@ -126,7 +197,7 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
      * @return the predecessor of the element, or null if no predecessor exists
      */
     public E predecessor(E e) {
-        Node node = findNode(e, root);
+        Node node = access(e, MountainMetrics.Operation.PREDECESSOR);
         if (node == null) {
             return null;
         }
@@ -154,7 +225,7 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
      * @return the successor of the element, or null if no successor exists
      */
     public E successor(E e) {
-        Node node = findNode(e, root);
+        Node node = access(e, MountainMetrics.Operation.SUCCESSOR);
         if (node == null) {
             return null;
         }
@@ -175,21 +246,301 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
         return (successor == null) ? null : successor.value;
     }
 
+    /**
+     * Returns a new finger on this tree. A finger remembers where its last search ended,
+     * so a search for a nearby element starts from there instead of from the root.
+     * 
+     * @return a new finger, positioned at the root
+     */
+    public Finger finger() {
+        return new Finger();
+    }
+
+    /**
+     * A search position in the tree, held by the caller between operations. Each search
+     * climbs from the last visited node only as far as needed to reach a subtree that can
+     * hold the element, then descends from there. When consecutive elements are close in
+     * order, the climb and descent are short, so sequential lookups and inserts cost about
+     * the distance between them rather than the height of the tree.
+     * <p>
+     * The finger stays correct when the tree is changed through other means: it notices
+     * that the tree was modified and starts its next search from the root again. A finger
+     * is not safe for use by several threads at once; give each thread its own.
+     */
+    public class Finger {
+        /** The nodes from the root down to the finger, with the finger at depth - 1. */
+        private Node[] path = newNodeArray(height() + 1);
+        /** For each node on the path, the nearest ancestor below which it lies on the right. */
+        private Node[] lows = newNodeArray(path.length);
+        /** For each node on the path, the nearest ancestor below which it lies on the left. */
+        private Node[] highs = newNodeArray(path.length);
+        private int depth = 0;
+        private int expectedModCount = modCount;
+
+        private Finger() {
+        }
+
+        /**
+         * Checks if the tree contains the specified element.
+         * 
+         * @param e the element to check for
+         * @return true if the element is found, false otherwise
+         */
+        public boolean contains(E e) {
+            return locate(e, MountainMetrics.Operation.CONTAINS) != null;
+        }
+
+        /**
+         * Finds the predecessor of the specified element.
+         * 
+         * @param e the element to find the predecessor of
+         * @return the predecessor of the element, or null if the element is not in the
+         *         tree or has no predecessor
+         */
+        public E predecessor(E e) {
+            Node node = locate(e, MountainMetrics.Operation.PREDECESSOR);
+            if (node == null) {
+                return null;
+            }
+            if (node.left != null) {
+                return max(node.left).value;
+            }
+            Node low = lows[depth - 1];
+            return (low == null) ? null : low.value;
+        }
+
+        /**
+         * Finds the successor of the specified element.
+         * 
+         * @param e the element to find the successor of
+         * @return the successor of the element, or null if the element is not in the
+         *         tree or has no successor
+         */
+        public E successor(E e) {
+            Node node = locate(e, MountainMetrics.Operation.SUCCESSOR);
+            if (node == null) {
+                return null;
+            }
+            if (node.right != null) {
+                return min(node.right).value;
+            }
+            Node high = highs[depth - 1];
+            return (high == null) ? null : high.value;
+        }
+
+        /**
+         * Adds the specified element to the tree, starting the search from the finger.
+         * The finger moves to the new node.
+         * The search is as cheap as for the other finger operations, but the heights
+         * and sizes of all ancestors of the new node still have to be updated.
+         * 
+         * @param e the element to add
+         * @return true if the element was added, false if it was already present
+         */
+        public boolean add(E e) {
+            if (e == null) throw new NullPointerException("Cannot add null to the BST");
+            if (root == null) {
+                BST.this.add(e);
+                return true;
+            }
+            if (locate(e, MountainMetrics.Operation.ADD) != null) {
+                return false;
+            }
+
+            Node parent = path[depth - 1];
+            Node node = new Node(e);
+            if (e.compareTo(parent.value) < 0) {
+                parent.left = node;
+                push(node, lows[depth - 1], parent);
+            } else {
+                parent.right = node;
+                push(node, parent, highs[depth - 1]);
+            }
+            // Every ancestor up to the root changes size, so this part is not finger-local.
+            for (int i = depth - 2; i >= 0; i--) {
+                updateHeight(path[i]);
+                updateSize(path[i]);
+            }
+            size++;
+            modCount++;
+            expectedModCount = modCount;
+            return true;
+        }
+
+        /**
+         * Moves the finger to the node holding the element, or to the last node on the
+         * way to where it would be.
+         * 
+         * @param e the element to find
+         * @param operation the operation the search is part of, for metrics
+         * @return the node holding the element, or null if it is not in the tree
+         */
+        private Node locate(E e, MountainMetrics.Operation operation) {
+            if (e == null) throw new NullPointerException("BST does not permit null elements");
+            if (expectedModCount != modCount) {
+                Arrays.fill(path, 0, depth, null);
+                Arrays.fill(lows, 0, depth, null);
+                Arrays.fill(highs, 0, depth, null);
+                depth = 0;
+                expectedModCount = modCount;
+            }
+            int comparisons = 0;
+            // Climb until the subtree of the finger can hold the element. The root's can.
+            while (depth > 1) {
+                Node low = lows[depth - 1];
+                Node high = highs[depth - 1];
+                if ((low == null || e.compareTo(low.value) > 0) && (high == null || e.compareTo(high.value) < 0)) {
+                    break;
+                }
+                comparisons += 2;
+                depth--;
+                path[depth] = null;
+                lows[depth] = null;
+                highs[depth] = null;
+            }
+            if (depth == 0) {
+                if (root == null) {
+                    return null;
+                }
+                push(root, null, null);
+            }
+
+            int descended = 0;
+            Node node = path[depth - 1];
+            while (true) {
+                int cmp = e.compareTo(node.value);
+                comparisons++;
+                if (cmp == 0) {
+                    recordOperation(operation, comparisons, descended);
+                    return node;
+                }
+                Node child = (cmp < 0) ? node.left : node.right;
+                if (child == null) {
+                    recordOperation(operation, comparisons, descended);
+                    return null;
+                }
+                if (cmp < 0) {
+                    push(child, lows[depth - 1], node);
+                } else {
+                    push(child, node, highs[depth - 1]);
+                }
+                node = child;
+                descended++;
+            }
+        }
+
+        private void push(Node node, Node low, Node high) {
+            if (depth == path.length) {
+                int capacity = path.length * 2;
+                path = Arrays.copyOf(path, capacity);
+                lows = Arrays.copyOf(lows, capacity);
+                highs = Arrays.copyOf(highs, capacity);
+            }
+            path[depth] = node;
+            lows[depth] = low;
+            highs[depth] = high;
+            depth++;
+        }
+    }
+
     /**
      * Prints the tree structure.
      */
     public void printTree() {
-        printNode(root);
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            writeTree(out, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
-    private void printNode(Node node) {
+    /**
+     * Writes the tree structure in the format of printTree, one node per line in preorder,
+     * without building it in memory first.
+     * 
+     * @param out where to write the tree; buffering is up to the caller
+     * @param subtreeRoot the element whose subtree to write, or null for the whole tree
+     * @param maxDepth the number of levels to write, counting the subtree root as one; at
+     *                 0 only the line that says how many nodes were left out is written
+     * @param maxNodes the number of nodes to write before stopping
+     * @throws IOException if writing fails
+     * @throws NoSuchElementException if subtreeRoot is not in the tree
+     * @throws IllegalArgumentException if maxDepth or maxNodes is negative
+     */
+    public void writeTree(Appendable out, E subtreeRoot, int maxDepth, int maxNodes) throws IOException {
+        checkLimit("maxDepth", maxDepth);
+        checkLimit("maxNodes", maxNodes);
+        Node node = subtree(subtreeRoot);
         if (node == null) return;
-        System.out.print(node.value + " -> ");
-        if (node.left != null) System.out.print("L:" + node.left.value + " ");
-        if (node.right != null) System.out.print("R:" + node.right.value + " ");
-        System.out.println();
-        printNode(node.left);
-        printNode(node.right);
+        if (maxDepth == 0) {
+            appendOmitted(out, size(node));
+            return;
+        }
+        int capacity = Math.min(height(), maxDepth) + 1;
+        Node[] stack = newNodeArray(capacity);
+        int[] levels = new int[capacity];
+        int top = 0;
+        int written = 0;
+        int skipped = 0;
+        stack[top] = node;
+        levels[top++] = 0;
+        while (top > 0) {
+            if (written == maxNodes) {
+                appendOmitted(out, size(node) - written - skipped);
+                break;
+            }
+            Node current = stack[--top];
+            int level = levels[top];
+            stack[top] = null;
+            out.append(String.valueOf(current.value)).append(" -> ");
+            if (current.left != null) out.append("L:").append(String.valueOf(current.left.value)).append(' ');
+            if (current.right != null) out.append("R:").append(String.valueOf(current.right.value)).append(' ');
+            out.append('\n');
+            written++;
+            if (level + 1 >= maxDepth) {
+                // The children are named above, but their subtrees are not written.
+                skipped += size(current) - 1;
+                continue;
+            }
+            if (current.right != null) {
+                stack[top] = current.right;
+                levels[top++] = level + 1;
+            }
+            if (current.left != null) {
+                stack[top] = current.left;
+                levels[top++] = level + 1;
+            }
+        }
+    }
+
+    /**
+     * Finds the root of the subtree to render.
+     * 
+     * @param subtreeRoot the element at the root of the subtree, or null for the whole tree
+     * @return the node holding the element, or null if the tree is empty
+     * @throws NoSuchElementException if subtreeRoot is not in the tree
+     */
+    private Node subtree(E subtreeRoot) {
+        if (subtreeRoot == null) {
+            return root;
+        }
+        Node node = findNode(subtreeRoot, root, MountainMetrics.Operation.CONTAINS);
+        if (node == null) {
+            throw new NoSuchElementException("Element not in the tree: " + subtreeRoot);
+        }
+        return node;
+    }
+
+    private static void checkLimit(String name, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException(name + " must not be negative: " + limit);
+        }
+    }
+
+    private static void appendOmitted(Appendable out, int count) throws IOException {
+        out.append("... (").append(Integer.toString(count)).append(" more)\n");
     }
 
     /**
@@ -200,30 +551,53 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
      */
     public boolean add(E e) {
         if (e == null) throw new NullPointerException("Cannot add null to the BST");
-        if (!contains(e)) {
-            root = add(root, e);
+        if (root == null) {
+            recordOperation(MountainMetrics.Operation.ADD, 0, 0);
+            root = new Node(e);
             size++;
+            modCount++;
             return true;
         }
-        return false;
-    }
 
-    private Node add(Node node, E e) {
-        if (node == null) {
-            return new Node(e);
+        Node[] path = pathBuffer(height() + 1);
+        int depth = 0;
+        Node node = root;
+        while (true) {
+            path[depth++] = node;
+            int cmp = e.compareTo(node.value);
+            if (cmp < 0) {
+                if (node.left == null) {
+                    node = node.left = new Node(e);
+                    break;
+                }
+                node = node.left;
+            } else if (cmp > 0) {
+                if (node.right == null) {
+                    node = node.right = new Node(e);
+                    break;
+                }
+                node = node.right;
+            } else {
+                recordOperation(MountainMetrics.Operation.ADD, depth, depth);
+                if (selfAdjusting) {
+                    splay(path, depth);
+                } else {
+                    Arrays.fill(path, 0, depth, null);
+                }
+                return false; // Duplicate value, do not insert
+            }
         }
-        int cmp = e.compareTo(node.value);
-        if (cmp < 0) {
-            node.left = add(node.left, e);
-        } else if (cmp > 0) {
-            node.right = add(node.right, e);
+
+        recordOperation(MountainMetrics.Operation.ADD, depth, depth);
+        if (selfAdjusting) {
+            path[depth++] = node;
+            splay(path, depth);
         } else {
-            return node; // Duplicate value, do not insert
+            updatePath(path, depth);
         }
-        
-        updateHeight(node);
-        updateSize(node);
-        return node;
+        size++;
+        modCount++;
+        return true;
     }
 
     /**
@@ -239,44 +613,61 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
         if (!(o instanceof Comparable)) {
             throw new ClassCastException("Cannot compare object of type " + o.getClass().getName());
         }
-        if (contains(o)) {
-            root = remove(root, (E) o);
-            size--;
-            return true;
-        }
-        return false;
-    }
-
-    private Node remove(Node node, E e) {
-        if (node == null) return null;
+        E e = (E) o;
 
-        int cmp = e.compareTo(node.value);
-        if (cmp < 0) {
-            node.left = remove(node.left, e);
-        } else if (cmp > 0) {
-            node.right = remove(node.right, e);
-        } else {
-            if (node.left == null || node.right == null) {
-                Node temp = (node.left != null) ? node.left : node.right;
-                if (temp == null) {
-                    temp = node;
-                    node = null;
-                } else {
-                    node = temp;
-                }
+        Node[] path = pathBuffer(height());
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            int cmp = e.compareTo(node.value);
+            if (cmp == 0) break;
+            path[depth++] = node;
+            node = (cmp < 0) ? node.left : node.right;
+        }
+        int comparisons = (node == null) ? depth : depth + 1;
+        if (node == null) {
+            recordOperation(MountainMetrics.Operation.REMOVE, comparisons, depth);
+            if (selfAdjusting) {
+                splay(path, depth);
             } else {
-                Node temp = min(node.right);
-                node.value = temp.value;
-                node.right = remove(node.right, temp.value);
+                Arrays.fill(path, 0, depth, null);
             }
+            return false;
         }
 
-        if (node == null) return node;
+        Node parent = (depth > 0) ? path[depth - 1] : null;
+        if (node.left != null && node.right != null) {
+            // Replace the value with its successor and unlink the successor instead.
+            path[depth++] = node;
+            parent = node;
+            Node successor = node.right;
+            while (successor.left != null) {
+                path[depth++] = successor;
+                parent = successor;
+                successor = successor.left;
+            }
+            node.value = successor.value;
+            node = successor;
+        }
+        recordOperation(MountainMetrics.Operation.REMOVE, comparisons, depth);
 
-        updateHeight(node);
-        updateSize(node);
+        Node child = (node.left != null) ? node.left : node.right;
+        if (parent == null) {
+            root = child;
+        } else if (parent.left == node) {
+            parent.left = child;
+        } else {
+            parent.right = child;
+        }
 
-        return node;
+        if (selfAdjusting) {
+            splay(path, depth);
+        } else {
+            updatePath(path, depth);
+        }
+        size--;
+        modCount++;
+        return true;
     }
 
     /**
@@ -285,6 +676,7 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
     public void clear() {
         root = null;
         size = 0;
+        modCount++;
     }
 
     /**
@@ -296,17 +688,7 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
     public boolean contains(Object o) {
         if (o == null) throw new NullPointerException("BST does not permit null elements");
         if (!(o instanceof Comparable)) throw new ClassCastException("Object of type " + o.getClass().getName() + " cannot be compared.");
-        return contains(root, (E) o);
-    }
-
-    private boolean contains(Node node, E e) {
-        while (node != null) {
-            int cmp = e.compareTo(node.value);
-            if (cmp < 0) node = node.left;
-            else if (cmp > 0) node = node.right;
-            else return true;
-        }
-        return false;
+        return access((E) o, MountainMetrics.Operation.CONTAINS) != null;
     }
 
     /**
@@ -360,6 +742,132 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
         return node == null ? 0 : node.subtreeSize;
     }
 
+    /**
+     * Records an operation in MountainMetrics if metrics are enabled.
+     * 
+     * @param operation the operation
+     * @param comparisons the number of element comparisons it made
+     * @param depth the number of levels it descended
+     */
+    private static void recordOperation(MountainMetrics.Operation operation, int comparisons, int depth) {
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordOperation(operation, comparisons, depth);
+        }
+    }
+
+    /**
+     * Updates the heights and subtree sizes of the nodes on a path, from the bottom up.
+     * 
+     * @param path the nodes on the path, starting at the root
+     * @param length the number of nodes on the path
+     */
+    private void updatePath(Node[] path, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            updateHeight(path[i]);
+            updateSize(path[i]);
+            path[i] = null;
+        }
+    }
+
+    /**
+     * Moves the last node on a path to the root with splay rotations, and updates the
+     * heights and subtree sizes of every node on the path. The last node's own height
+     * and size are recomputed first, so the path may end just above a change.
+     * 
+     * @param path the nodes on the path, starting at the root
+     * @param length the number of nodes on the path
+     */
+    private void splay(Node[] path, int length) {
+        if (length == 0) {
+            return;
+        }
+        int i = length - 1;
+        Node x = path[i];
+        updateHeight(x);
+        updateSize(x);
+        int rotations = 0;
+        while (i > 0) {
+            Node parent = path[i - 1];
+            if (i == 1) {
+                rotateUp(x, parent, null);
+                rotations++;
+                break;
+            }
+            Node grandparent = path[i - 2];
+            Node above = (i >= 3) ? path[i - 3] : null;
+            if ((grandparent.left == parent) == (parent.left == x)) {
+                // Zig-zig: rotate the parent first, so that long chains get folded in half.
+                rotateUp(parent, grandparent, above);
+                rotateUp(x, parent, above);
+            } else {
+                rotateUp(x, parent, grandparent);
+                rotateUp(x, grandparent, above);
+            }
+            rotations += 2;
+            i -= 2;
+        }
+        Arrays.fill(path, 0, length, null);
+        if (rotations > 0) {
+            modCount++;
+            if (MountainMetrics.isEnabled()) {
+                MountainMetrics.recordRotations(rotations);
+            }
+        }
+    }
+
+    /**
+     * Rotates a node above its parent and updates the height and size of both.
+     * 
+     * @param x the node to move up
+     * @param parent the parent of x
+     * @param above the parent of parent, or null if parent is the root
+     */
+    private void rotateUp(Node x, Node parent, Node above) {
+        if (parent.left == x) {
+            parent.left = x.right;
+            x.right = parent;
+        } else {
+            parent.right = x.left;
+            x.left = parent;
+        }
+        if (above == null) {
+            root = x;
+        } else if (above.left == parent) {
+            above.left = x;
+        } else {
+            above.right = x;
+        }
+        updateHeight(parent);
+        updateSize(parent);
+        updateHeight(x);
+        updateSize(x);
+    }
+
+    /**
+     * Returns the stack used to record the path of an add or remove, grown to hold
+     * at least the given number of nodes. The same stack is reused by every call.
+     * 
+     * @param capacity the number of nodes the stack must hold
+     * @return the path stack
+     */
+    private Node[] pathBuffer(int capacity) {
+        if (pathBuffer.length < capacity) {
+            pathBuffer = newNodeArray(Math.max(capacity, pathBuffer.length * 2));
+        }
+        return pathBuffer;
+    }
+
+    /**
+     * Creates an array of nodes to be used as an explicit traversal stack.
+     * 
+     * @param length the length of the array
+     * @return a new array of nodes
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected Node[] newNodeArray(int length) {
+        return (Node[]) new BST.Node[Math.max(length, 1)];
+    }
+
     @Override
     public Iterator<E> iterator() {
         return new BSTIterator(root);
@@ -483,16 +991,62 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
     }
 
     private E getElementAtIndex(Node node, int index) {
-        if (node == null) return null;
+        Node[] path = selfAdjusting ? pathBuffer(height()) : null;
+        int depth = 0;
+        while (node != null) {
+            if (path != null) {
+                path[depth] = node;
+            }
+            int leftSize = (node.left != null) ? node.left.subtreeSize : 0;
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                break;
+            }
+            depth++;
+        }
+        recordOperation(MountainMetrics.Operation.GET, 0, depth);
+        if (path != null) {
+            splay(path, depth + 1);
+        }
+        return (node == null) ? null : node.value;
+    }
 
-        int leftSize = (node.left != null) ? node.left.subtreeSize : 0;
-        if (index < leftSize) {
-            return getElementAtIndex(node.left, index);
-        } else if (index > leftSize) {
-            return getElementAtIndex(node.right, index - leftSize - 1);
-        } else {
-            return node.value;
+    /**
+     * Returns the elements between two bounds, both inclusive, in ascending order.
+     * Only the subtrees that overlap the range are visited.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the elements e with from <= e <= to, in ascending order
+     */
+    public List<E> range(E from, E to) {
+        if (from == null || to == null) throw new NullPointerException("BST does not permit null elements");
+        List<E> elements = new ArrayList<>();
+        Node[] stack = newNodeArray(height());
+        int top = 0;
+        Node node = root;
+        while (top > 0 || node != null) {
+            if (node != null) {
+                if (from.compareTo(node.value) <= 0) {
+                    stack[top++] = node;
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+                continue;
+            }
+            node = stack[--top];
+            if (to.compareTo(node.value) < 0) {
+                break;
+            }
+            elements.add(node.value);
+            node = node.right;
         }
+        return elements;
     }
 
     /**
@@ -566,22 +1120,42 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
 
     @Override
     public String toString() {
-        Iterator<E> it = iterator();
-        if (!it.hasNext()) {
-            return "[]";
+        StringBuilder sb = new StringBuilder();
+        try {
+            writeElements(sb, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new AssertionError("StringBuilder does not throw IOException", e);
         }
+        return sb.toString();
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append('[');
+    /**
+     * Writes the elements in ascending order in the format of toString, without
+     * building the whole string in memory first.
+     * 
+     * @param out where to write the elements; buffering is up to the caller
+     * @param maxElements the number of elements to write before stopping
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if maxElements is negative
+     */
+    public void writeElements(Appendable out, int maxElements) throws IOException {
+        checkLimit("maxElements", maxElements);
+        Iterator<E> it = iterator();
+        out.append('[');
+        int written = 0;
         while (it.hasNext()) {
+            if (written == maxElements) {
+                out.append("... (").append(Integer.toString(size - written)).append(" more)");
+                break;
+            }
             E e = it.next();
-            sb.append(e == this ? "(this Collection)" : String.valueOf(e));
+            out.append(e == this ? "(this Collection)" : String.valueOf(e));
+            written++;
             if (it.hasNext()) {
-                sb.append(", ");
+                out.append(", ");
             }
         }
-        sb.append(']');
-        return sb.toString();
+        out.append(']');
     }
 
     /**
@@ -591,30 +1165,89 @@ public class BST<E extends Comparable<E>> implements Iterable<E> {
      */
     public String toStringTreeFormat() {
         StringBuilder sb = new StringBuilder();
-        toStringTreeFormat(sb, root, 0);
+        try {
+            writeTreeFormat(sb, null, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            throw new AssertionError("StringBuilder does not throw IOException", e);
+        }
         return sb.toString();
     }
 
-    private void toStringTreeFormat(StringBuilder sb, Node node, int level) {
-        if (node == null) {
-            appendIndent(sb, level);
-            sb.append("null\n");
+    /**
+     * Writes the tree in the format of toStringTreeFormat, without building it in memory
+     * first. A subtree that is cut off by maxDepth is written as one line that says how
+     * many nodes it holds.
+     * 
+     * @param out where to write the tree; buffering is up to the caller
+     * @param subtreeRoot the element whose subtree to write, or null for the whole tree
+     * @param maxDepth the number of levels to write, counting the subtree root as one; at
+     *                 0 only the line that says how many nodes were left out is written
+     * @param maxNodes the number of nodes to write before stopping
+     * @throws IOException if writing fails
+     * @throws NoSuchElementException if subtreeRoot is not in the tree
+     * @throws IllegalArgumentException if maxDepth or maxNodes is negative
+     */
+    public void writeTreeFormat(Appendable out, E subtreeRoot, int maxDepth, int maxNodes) throws IOException {
+        checkLimit("maxDepth", maxDepth);
+        checkLimit("maxNodes", maxNodes);
+        Node node = subtree(subtreeRoot);
+        if (maxDepth == 0) {
+            if (node != null) {
+                appendOmitted(out, size(node));
+            }
             return;
         }
+        // Every node pushes both children, so the stack holds at most one pending
+        // right child per level plus the current pair.
+        int capacity = Math.min(height(), maxDepth) + 2;
+        Node[] stack = newNodeArray(capacity);
+        int[] levels = new int[capacity];
+        int top = 0;
+        int written = 0;
+        int skipped = 0;
+        stack[top] = node;
+        levels[top++] = 0;
+        while (top > 0) {
+            Node current = stack[--top];
+            int level = levels[top];
+            stack[top] = null;
+            if (current == null) {
+                appendIndent(out, level);
+                out.append("null\n");
+                continue;
+            }
+            if (written == maxNodes) {
+                appendIndent(out, level);
+                appendOmitted(out, size(node) - written - skipped);
+                break;
+            }
 
-        if (level > 0) {
-            appendIndent(sb, level - 1);
-            sb.append("|--");
+            if (level > 0) {
+                appendIndent(out, level - 1);
+                out.append("|--");
+            }
+            out.append(String.valueOf(current.value)).append('\n');
+            written++;
+
+            if (level + 1 >= maxDepth) {
+                if (current.left != null || current.right != null) {
+                    appendIndent(out, level);
+                    out.append("|--");
+                    appendOmitted(out, size(current) - 1);
+                    skipped += size(current) - 1;
+                }
+                continue;
+            }
+            stack[top] = current.right;
+            levels[top++] = level + 1;
+            stack[top] = current.left;
+            levels[top++] = level + 1;
         }
-        sb.append(node.value + "\n");
-
-        toStringTreeFormat(sb, node.left, level + 1);
-        toStringTreeFormat(sb, node.right, level + 1);
     }
 
-    private void appendIndent(StringBuilder sb, int level) {
+    private static void appendIndent(Appendable out, int level) throws IOException {
         for (int i = 0; i < level; i++) {
-            sb.append("   ");
+            out.append("   ");
         }
     }
 }
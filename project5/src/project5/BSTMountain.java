@@ -2,8 +2,15 @@
 package project5;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * BSTMountain class extends the BST class for RestStop elements.
@@ -13,131 +20,810 @@ import java.util.stream.Collectors;
  * @author Majo Salgado
  */
 public class BSTMountain extends BST<RestStop> {
-    private List<List<RestStop>> successfulPaths;
+    /** Marks a subtree that holds no leaf at the maximum depth. */
+    private static final int NO_PATH = Integer.MIN_VALUE;
+    /** The number of query results kept by a new mountain. */
+    public static final int DEFAULT_RESULT_CACHE_SIZE = 16;
+    /** The most sets of path counts kept, since each holds a count for every node on a path. */
+    private static final int PATH_COUNT_CACHE_SIZE = 4;
+
+    private final SurvivalRules rules;
+    private List<MountainPath> successfulPaths;
+    private final ResultCache<Query, List<MountainPath>> results = new ResultCache<>(DEFAULT_RESULT_CACHE_SIZE);
+    private final ResultCache<Query, Map<Node, Long>> pathCountCache = new ResultCache<>(PATH_COUNT_CACHE_SIZE);
 
     /**
-     * Constructs an empty BSTMountain.
+     * Constructs an empty BSTMountain under the default rules.
      */
     public BSTMountain() {
+        this(SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Constructs an empty BSTMountain whose paths are checked against the given rules.
+     * 
+     * @param rules the rules that say what each step and each obstacle uses up
+     */
+    public BSTMountain(SurvivalRules rules) {
         super();
-        successfulPaths = new ArrayList<>();
+        this.rules = rules;
+        successfulPaths = Collections.emptyList();
+    }
+
+    /**
+     * Returns the rules this mountain's paths are checked against.
+     * 
+     * @return the rules
+     */
+    public SurvivalRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Adds a rest stop to the mountain.
+     * 
+     * @param stop the rest stop to add
+     * @return true if the rest stop was added, false if it was already present
+     * @throws IllegalArgumentException if the rest stop was built with other rules
+     */
+    @Override
+    public boolean add(RestStop stop) {
+        if (stop != null && stop.getRules() != rules) {
+            throw new IllegalArgumentException("Rest stop " + stop.getLabel() + " was built with other rules");
+        }
+        return super.add(stop);
+    }
+
+    /**
+     * Self-adjusting mode is not supported: the shape of a mountain is the order its rest
+     * stops were added in, and every path down it depends on that shape.
+     * 
+     * @param selfAdjusting must be false
+     * @throws UnsupportedOperationException if selfAdjusting is true
+     */
+    @Override
+    public void setSelfAdjusting(boolean selfAdjusting) {
+        if (selfAdjusting) {
+            throw new UnsupportedOperationException("A mountain's shape cannot change");
+        }
+    }
+
+    /**
+     * Sets how many query results are kept. The results of findSuccessfulPaths,
+     * findFirstPath and findTopPaths are cached by their arguments, so asking again
+     * while the mountain is unchanged returns at once. Adding, removing or clearing rest
+     * stops drops every cached result. Each cached result keeps its paths reachable, so
+     * a large cache of explore results can hold a lot of memory. The path counts behind
+     * countSuccessfulPaths and samplePaths are cached the same way, up to
+     * {@value #PATH_COUNT_CACHE_SIZE} sets of starting supplies.
+     * 
+     * @param size the most results to keep, or 0 to cache nothing
+     * @throws IllegalArgumentException if size is negative
+     */
+    public void setResultCacheSize(int size) {
+        results.setCapacity(size);
+        pathCountCache.setCapacity(Math.min(size, PATH_COUNT_CACHE_SIZE));
+    }
+
+    /**
+     * Returns the number of queries answered from the result cache.
+     * 
+     * @return the number of cache hits
+     */
+    public long getResultCacheHits() {
+        return results.getHits();
     }
 
     /**
      * Explores all paths from the root to the leaves, collecting successful paths.
+     * Exploring again replaces the paths collected before.
      */
     public void explore() {
-        List<RestStop> currentPath = new ArrayList<>();
-        List<String> collectedSupplies = new ArrayList<>();
-        int maxDepth = calculateMaxDepth(root) - 1;
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.EXPLORE, null);
+        try {
+            successfulPaths = findSuccessfulPaths();
+        } finally {
+            timer.close();
+        }
+        timer = MountainMetrics.startPhase(MountainMetrics.Phase.REPORT, null);
+        try {
+            reportPaths();
+        } finally {
+            timer.close();
+        }
+    }
+
+    /**
+     * Finds all successful paths without printing them or keeping them in this mountain.
+     * 
+     * @return the successful paths in label order
+     */
+    public List<MountainPath> findSuccessfulPaths() {
+        return findSuccessfulPaths(Collections.emptyList());
+    }
 
-        explore(root, currentPath, collectedSupplies, 0, maxDepth);
-        reportPaths();
+    /**
+     * Finds all successful paths for a hiker who starts out carrying the given supplies.
+     * 
+     * @param startingSupplies the supplies carried before the first rest stop
+     * @return an unmodifiable list of the successful paths in label order
+     */
+    public List<MountainPath> findSuccessfulPaths(List<String> startingSupplies) {
+        int[] supplies = rules.count(startingSupplies);
+        Query query = new Query(QueryKind.EXPLORE, supplies, 0);
+        List<MountainPath> paths = results.get(modCount, query);
+        if (paths == null) {
+            paths = new ArrayList<>();
+            explore(paths::add, supplies.clone(), calculateMaxDepth() - 1);
+            paths = Collections.unmodifiableList(paths);
+            results.put(modCount, query, paths);
+        }
+        return paths;
+    }
+
+    /**
+     * Finds the paths from the root to a leaf at the given depth that a hiker carrying
+     * the given supplies on arrival at the root survives, and hands each one to a consumer
+     * as soon as it is found. This lets a mountain stand in for a subtree of a larger
+     * mountain, whose paths only count if they reach that mountain's maximum depth.
+     * Nothing is cached.
+     * 
+     * @param startingSupplies the supplies carried on arrival at the root, one count per kind
+     * @param leafDepth the depth below the root that a leaf must be at
+     * @param paths the consumer of the successful paths, which get to it in label order
+     */
+    void findSuccessfulPaths(int[] startingSupplies, int leafDepth, Consumer<MountainPath> paths) {
+        if (leafDepth < height()) {
+            explore(paths, startingSupplies.clone(), leafDepth);
+        }
+    }
+
+    /**
+     * Returns the successful paths collected by explore. Paths share the rest stops
+     * they have in common, so keeping them costs one link per distinct rest stop.
+     * 
+     * @return an unmodifiable view of the successful paths
+     */
+    public List<MountainPath> getSuccessfulPaths() {
+        return Collections.unmodifiableList(successfulPaths);
     }
 
     /**
-     * Recursively explores the tree from the given node.
+     * Explores the tree depth first from the root, left before right, using an explicit
+     * stack so that the depth of the mountain is not limited by the thread's stack size.
      * 
-     * @param node the current node
-     * @param currentPath the current path being explored
-     * @param collectedSupplies the supplies collected so far
-     * @param currentDepth the current depth of the node
+     * @param paths the consumer of the successful paths, in label order
+     * @param startingSupplies the supplies carried before the first rest stop, one count
+     *                         per kind, which are used up
      * @param maxDepth the maximum depth of the tree
      */
-    private void explore(Node node, List<RestStop> currentPath, List<String> collectedSupplies, int currentDepth, int maxDepth) {
-        if (node == null) {
+    private void explore(Consumer<MountainPath> paths, int[] startingSupplies, int maxDepth) {
+        if (root == null) {
             return;
         }
+        ExploreStack stack = new ExploreStack(height() + 1);
+        stack.push(root, null, startingSupplies, 0);
+        long visited = 0;
+        long found = 0;
 
-        RestStop currentStop = node.getData();
-        currentPath.add(currentStop);
+        while (stack.pop()) {
+            Node node = stack.node;
+            RestStop currentStop = node.getData();
+            MountainPath currentPath = new MountainPath(stack.parentPath, currentStop);
+            int[] collectedSupplies = stack.supplies;
+            int currentDepth = stack.depth;
+            visited++;
 
-        boolean isLeaf = (node.left == null && node.right == null);
+            boolean isLeaf = (node.left == null && node.right == null);
+            if (canSurvive(currentStop, collectedSupplies, isLeaf)) {
+                if (isLeaf) {
+                    if (currentDepth == maxDepth) {
+                        paths.accept(currentPath);
+                        found++;
+                    }
+                } else {
+                    stack.pushChildren(node, currentPath, collectedSupplies, currentDepth + 1);
+                }
+            }
+        }
+        recordSearch(visited, 0, found);
+    }
 
-        List<String> suppliesSnapshot = new ArrayList<>(collectedSupplies);
-        collectedSupplies.addAll(currentStop.getSupplies());
+    /**
+     * Finds the successful path that comes first in label order. Children are searched
+     * left to right and the search stops at the first successful leaf, so only a small
+     * part of the mountain is visited in the common case.
+     * 
+     * @return the first successful path in label order, or null if there is none
+     */
+    public MountainPath findFirstPath() {
+        return findFirstPath(Collections.emptyList());
+    }
 
-        if (canSurvive(currentStop, collectedSupplies, isLeaf)) {
-            if (isLeaf) {
-                if (currentDepth == maxDepth) {
-                    successfulPaths.add(new ArrayList<>(currentPath));
+    /**
+     * Finds the first successful path in label order for a hiker who starts out carrying
+     * the given supplies. A mountain is feasible for those supplies if this is not null.
+     * 
+     * @param startingSupplies the supplies carried before the first rest stop
+     * @return the first successful path in label order, or null if there is none
+     */
+    public MountainPath findFirstPath(List<String> startingSupplies) {
+        int[] supplies = rules.count(startingSupplies);
+        Query query = new Query(QueryKind.FIRST, supplies, 0);
+        List<MountainPath> cached = results.get(modCount, query);
+        if (cached == null) {
+            MountainPath path = searchFirstPath(supplies.clone());
+            cached = (path == null) ? Collections.emptyList() : Collections.singletonList(path);
+            results.put(modCount, query, cached);
+        }
+        return cached.isEmpty() ? null : cached.get(0);
+    }
+
+    /**
+     * Searches for the first successful path in label order.
+     * 
+     * @param startingSupplies the supplies carried before the first rest stop, one count
+     *                         per kind, which are used up
+     * @return the first successful path in label order, or null if there is none
+     */
+    private MountainPath searchFirstPath(int[] startingSupplies) {
+        if (root == null) {
+            return null;
+        }
+        int height = calculateMaxDepth();
+
+        ExploreStack stack = new ExploreStack(height + 1);
+        stack.push(root, null, startingSupplies, 0);
+        long visited = 0;
+        long pruned = 0;
+
+        while (stack.pop()) {
+            Node node = stack.node;
+            // The deepest node below is a leaf, so a leaf at the maximum depth is below
+            // exactly when the subtree reaches down to it.
+            if (stack.depth + node.height != height) {
+                pruned++;
+                continue;
+            }
+            visited++;
+            RestStop currentStop = node.getData();
+            MountainPath currentPath = new MountainPath(stack.parentPath, currentStop);
+            int[] collectedSupplies = stack.supplies;
+
+            boolean isLeaf = (node.left == null && node.right == null);
+            if (canSurvive(currentStop, collectedSupplies, isLeaf)) {
+                if (isLeaf) {
+                    recordSearch(visited, pruned, 1);
+                    return currentPath;
                 }
+                stack.pushChildren(node, currentPath, collectedSupplies, stack.depth + 1);
+            }
+        }
+        recordSearch(visited, pruned, 0);
+        return null;
+    }
+
+    /**
+     * Counts the successful paths without building them.
+     * 
+     * @return the number of successful paths
+     */
+    public long countSuccessfulPaths() {
+        return countSuccessfulPaths(Collections.emptyList());
+    }
+
+    /**
+     * Counts the successful paths for a hiker who starts out carrying the given supplies,
+     * without building them.
+     * 
+     * @param startingSupplies the supplies carried before the first rest stop
+     * @return the number of successful paths
+     */
+    public long countSuccessfulPaths(List<String> startingSupplies) {
+        return (root == null) ? 0 : pathCounts(rules.count(startingSupplies)).getOrDefault(root, 0L);
+    }
+
+    /**
+     * Picks k successful paths uniformly at random, each one independently of the others,
+     * so the same path can be picked more than once. Each pick walks down from the root
+     * and takes a child with a probability proportional to the number of successful paths
+     * through it, so after the paths are counted once a pick costs one step per level.
+     * 
+     * @param k the number of paths to pick
+     * @param seed the seed of the random numbers, so that the same seed picks the same paths
+     * @return k successful paths, or none if there are no successful paths
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<MountainPath> samplePaths(int k, long seed) {
+        return samplePaths(k, seed, Collections.emptyList());
+    }
+
+    /**
+     * Picks k successful paths uniformly at random, as samplePaths(k, seed) does, for a
+     * hiker who starts out carrying the given supplies.
+     * 
+     * @param k the number of paths to pick
+     * @param seed the seed of the random numbers, so that the same seed picks the same paths
+     * @param startingSupplies the supplies carried before the first rest stop
+     * @return k successful paths, or none if there are no successful paths
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<MountainPath> samplePaths(int k, long seed, List<String> startingSupplies) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        List<MountainPath> sample = new ArrayList<>(k);
+        if (root == null) {
+            return sample;
+        }
+        Map<Node, Long> counts = pathCounts(rules.count(startingSupplies));
+        if (!counts.containsKey(root)) {
+            return sample;
+        }
+        Random random = new Random(seed);
+        for (int i = 0; i < k; i++) {
+            Node node = root;
+            MountainPath path = new MountainPath(null, node.getData());
+            while (node.left != null || node.right != null) {
+                long leftCount = (node.left == null) ? 0 : counts.getOrDefault(node.left, 0L);
+                node = (random.nextLong(counts.get(node)) < leftCount) ? node.left : node.right;
+                path = new MountainPath(path, node.getData());
+            }
+            sample.add(path);
+        }
+        return sample;
+    }
+
+    /**
+     * Returns the number of successful paths through every node, computing them in one
+     * post-order walk unless they are cached for this version of the mountain. A node is
+     * only reached by one path from the root, so the supplies carried on arrival at it
+     * are known on the way down, and the counts are added up on the way back up.
+     * 
+     * @param startingSupplies the supplies carried before the first rest stop, one count per kind
+     * @return the count of every node with at least one successful path through it;
+     *         other nodes are left out
+     */
+    private Map<Node, Long> pathCounts(int[] startingSupplies) {
+        Query query = new Query(QueryKind.COUNT, startingSupplies, 0);
+        Map<Node, Long> counts = pathCountCache.get(modCount, query);
+        if (counts != null) {
+            return counts;
+        }
+        counts = new IdentityHashMap<>();
+        int maxDepth = calculateMaxDepth() - 1;
+        int levels = height();
+        Node[] stack = newNodeArray(levels);
+        // Per level: the supplies after arriving at the node, its count so far, and
+        // whether its left (1) or right (2) child has been entered.
+        int[][] supplies = new int[levels][];
+        long[] sums = new long[levels];
+        byte[] entered = new byte[levels];
+        int top = 0;
+        long visited = 0;
+
+        Node next = root;
+        while (next != null || top > 0) {
+            if (next != null) {
+                int[] carried = (top == 0) ? startingSupplies.clone() : supplies[top - 1].clone();
+                boolean isLeaf = (next.left == null && next.right == null);
+                visited++;
+                stack[top] = next;
+                supplies[top] = carried;
+                sums[top] = 0;
+                entered[top] = 2;
+                if (canSurvive(next.getData(), carried, isLeaf)) {
+                    if (isLeaf) {
+                        sums[top] = (top == maxDepth) ? 1 : 0;
+                    } else {
+                        entered[top] = 0;
+                    }
+                }
+                top++;
+                next = null;
+                continue;
+            }
+            int level = top - 1;
+            Node node = stack[level];
+            if (entered[level] == 0) {
+                entered[level] = 1;
+                next = node.left;
+            } else if (entered[level] == 1) {
+                entered[level] = 2;
+                next = node.right;
             } else {
-                explore(node.left, new ArrayList<>(currentPath), new ArrayList<>(collectedSupplies), currentDepth + 1, maxDepth);
-                explore(node.right, new ArrayList<>(currentPath), new ArrayList<>(collectedSupplies), currentDepth + 1, maxDepth);
+                top--;
+                stack[top] = null;
+                supplies[top] = null;
+                if (sums[top] > 0) {
+                    counts.put(node, sums[top]);
+                    if (top > 0) {
+                        sums[top - 1] += sums[top];
+                    }
+                }
             }
         }
+        recordSearch(visited, 0, counts.getOrDefault(root, 0L));
+        pathCountCache.put(modCount, query, counts);
+        return counts;
+    }
 
-        collectedSupplies.clear();
-        collectedSupplies.addAll(suppliesSnapshot);
-        currentPath.remove(currentPath.size() - 1);
+    /**
+     * Finds the k successful paths that end with the most leftover supplies. Paths with the
+     * same amount of leftover supplies are ordered by label. A subtree is skipped as soon as
+     * the supplies it could add at best cannot beat the k-th path found so far.
+     * 
+     * @param k the maximum number of paths to return
+     * @return an unmodifiable list of up to k successful paths, with the most leftover
+     *         supplies first
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<MountainPath> findTopPaths(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        Query query = new Query(QueryKind.TOP, null, k);
+        List<MountainPath> topPaths = results.get(modCount, query);
+        if (topPaths == null) {
+            topPaths = Collections.unmodifiableList(searchTopPaths(k));
+            results.put(modCount, query, topPaths);
+        }
+        return topPaths;
     }
 
     /**
-     * Checks if the hiker can survive given the current supplies and obstacles at the rest stop.
+     * Searches for the k successful paths that end with the most leftover supplies.
      * 
-     * @param stop the current rest stop
-     * @param supplies the current supplies
-     * @param isLeaf whether the current node is a leaf
-     * @return true if the hiker can survive, false otherwise
+     * @param k the maximum number of paths to return
+     * @return up to k successful paths, with the most leftover supplies first
+     */
+    private List<MountainPath> searchTopPaths(int k) {
+        List<MountainPath> topPaths = new ArrayList<>();
+        if (root == null || k == 0) {
+            return topPaths;
+        }
+        int maxDepth = calculateMaxDepth() - 1;
+        int[] bounds = computeGainBounds(maxDepth);
+
+        // The head of the queue is the path to evict next.
+        PriorityQueue<RankedPath> best = new PriorityQueue<>(Math.min(k, 1024), RankedPath.WORST_FIRST);
+        long sequence = 0;
+
+        ExploreStack stack = new ExploreStack(height() + 1);
+        stack.push(root, null, new int[rules.supplyKinds()], 0);
+        long visited = 0;
+        long pruned = 0;
+
+        while (stack.pop()) {
+            Node node = stack.node;
+            int[] collectedSupplies = stack.supplies;
+            int bound = bounds[stack.index];
+            if (bound == NO_PATH) {
+                pruned++;
+                continue;
+            }
+            // A later path with equal leftover supplies loses the tie, so equal is not good enough.
+            if (best.size() == k && SurvivalRules.total(collectedSupplies) + bound <= best.peek().leftover) {
+                pruned++;
+                continue;
+            }
+            visited++;
+
+            RestStop currentStop = node.getData();
+            MountainPath currentPath = new MountainPath(stack.parentPath, currentStop);
+
+            boolean isLeaf = (node.left == null && node.right == null);
+            if (canSurvive(currentStop, collectedSupplies, isLeaf)) {
+                if (isLeaf) {
+                    RankedPath candidate = new RankedPath(currentPath, SurvivalRules.total(collectedSupplies), sequence++);
+                    if (best.size() < k) {
+                        best.add(candidate);
+                    } else if (RankedPath.WORST_FIRST.compare(candidate, best.peek()) > 0) {
+                        best.poll();
+                        best.add(candidate);
+                    }
+                } else {
+                    stack.pushChildren(node, currentPath, collectedSupplies, stack.depth + 1);
+                }
+            }
+        }
+
+        recordSearch(visited, pruned, best.size());
+
+        List<RankedPath> ranked = new ArrayList<>(best);
+        ranked.sort(RankedPath.WORST_FIRST.reversed());
+        for (RankedPath rankedPath : ranked) {
+            topPaths.add(rankedPath.path);
+        }
+        return topPaths;
+    }
+
+    /**
+     * The kinds of queries whose results are cached.
      */
-    private boolean canSurvive(RestStop stop, List<String> supplies, boolean isLeaf) {
-        List<String> obstacles = stop.getObstacles();
+    private enum QueryKind {
+        EXPLORE, FIRST, TOP, COUNT
+    }
+
+    /**
+     * The arguments of a cached query: its kind, the starting supply counts and k.
+     */
+    private static final class Query {
+        final QueryKind kind;
+        final int[] supplies;
+        final int k;
 
-        if (!isLeaf && !supplies.contains("food")) {
-            return false;
-        } else if (!isLeaf) {
-            supplies.remove("food");
+        Query(QueryKind kind, int[] supplies, int k) {
+            this.kind = kind;
+            this.supplies = supplies;
+            this.k = k;
         }
 
-        for (String obstacle : obstacles) {
-            if (obstacle.equals("fallen tree") && supplies.contains("axe")) {
-                supplies.remove("axe");
-            } else if (obstacle.equals("fallen tree")) {
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Query)) {
                 return false;
             }
+            Query other = (Query) o;
+            return kind == other.kind && k == other.k && Arrays.equals(supplies, other.supplies);
+        }
 
-            if (obstacle.equals("river") && supplies.contains("raft")) {
-                supplies.remove("raft");
-            } else if (obstacle.equals("river")) {
+        @Override
+        public int hashCode() {
+            return (kind.hashCode() * 31 + k) * 31 + Arrays.hashCode(supplies);
+        }
+    }
+
+    /**
+     * A successful path together with its leftover supplies and the order it was found in.
+     */
+    private static class RankedPath {
+        static final Comparator<RankedPath> WORST_FIRST = Comparator
+                .comparingInt((RankedPath p) -> p.leftover)
+                .thenComparing(Comparator.comparingLong((RankedPath p) -> p.sequence).reversed());
+
+        final MountainPath path;
+        final int leftover;
+        final long sequence;
+
+        RankedPath(MountainPath path, int leftover, long sequence) {
+            this.path = path;
+            this.leftover = leftover;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * An explicit stack for depth-first searches down the mountain. Each entry holds a node
+     * still to be visited, the path leading up to it, the supplies carried on arrival, its
+     * depth and its number in pre-order. Children are pushed right first so that they are
+     * visited left to right.
+     */
+    private class ExploreStack {
+        private Node[] nodes;
+        private MountainPath[] parentPaths;
+        private int[][] suppliesStack;
+        private int[] depths;
+        private int[] indices;
+        private int size;
+
+        /** The node of the entry taken by the last call to pop. */
+        Node node;
+        /** The path leading up to the node of the entry taken by the last call to pop. */
+        MountainPath parentPath;
+        /** The supplies of the entry taken by the last call to pop. */
+        int[] supplies;
+        /** The depth of the entry taken by the last call to pop. */
+        int depth;
+        /** The pre-order number of the entry taken by the last call to pop. */
+        int index;
+
+        ExploreStack(int capacity) {
+            nodes = newNodeArray(capacity);
+            parentPaths = new MountainPath[nodes.length];
+            suppliesStack = new int[nodes.length][];
+            depths = new int[nodes.length];
+            indices = new int[nodes.length];
+        }
+
+        /**
+         * Pushes the root of the search, which is number 0 in pre-order.
+         */
+        void push(Node node, MountainPath parentPath, int[] supplies, int depth) {
+            push(node, parentPath, supplies, depth, 0);
+        }
+
+        private void push(Node node, MountainPath parentPath, int[] supplies, int depth, int index) {
+            if (size == nodes.length) {
+                grow();
+            }
+            nodes[size] = node;
+            parentPaths[size] = parentPath;
+            suppliesStack[size] = supplies;
+            depths[size] = depth;
+            indices[size] = index;
+            size++;
+        }
+
+        /**
+         * Pushes the children of the node taken by the last call to pop. The left child
+         * takes over the given supplies and the right child gets its own copy.
+         */
+        void pushChildren(Node parent, MountainPath currentPath, int[] collectedSupplies, int childDepth) {
+            if (parent.right != null) {
+                int[] rightSupplies = (parent.left != null) ? collectedSupplies.clone() : collectedSupplies;
+                push(parent.right, currentPath, rightSupplies, childDepth, index + 1 + subtreeSize(parent.left));
+            }
+            if (parent.left != null) {
+                push(parent.left, currentPath, collectedSupplies, childDepth, index + 1);
+            }
+        }
+
+        /**
+         * Takes the top entry off the stack and makes it available through the
+         * node, parentPath, supplies and depth fields.
+         * 
+         * @return false if the stack was empty
+         */
+        boolean pop() {
+            if (size == 0) {
                 return false;
             }
+            size--;
+            node = nodes[size];
+            parentPath = parentPaths[size];
+            supplies = suppliesStack[size];
+            depth = depths[size];
+            index = indices[size];
+            nodes[size] = null;
+            parentPaths[size] = null;
+            suppliesStack[size] = null;
+            return true;
         }
 
-        return true;
+        private void grow() {
+            int capacity = nodes.length * 2;
+            Node[] grownNodes = newNodeArray(capacity);
+            System.arraycopy(nodes, 0, grownNodes, 0, size);
+            nodes = grownNodes;
+            parentPaths = Arrays.copyOf(parentPaths, capacity);
+            suppliesStack = Arrays.copyOf(suppliesStack, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+            indices = Arrays.copyOf(indices, capacity);
+        }
     }
 
     /**
-     * Calculates the maximum depth of the tree.
+     * Computes, for every node, the largest change in the number of carried supplies that
+     * a path from that node to a leaf at the maximum depth can bring. Along a surviving
+     * path every stop adds its supplies and every obstacle and every step down uses up
+     * what the rules say, so the bound is exact for paths that survive. Nodes with no leaf
+     * at the maximum depth below them get NO_PATH.
+     * <p>
+     * The bounds are kept in an array by pre-order number, the order in which a search
+     * from the root meets the nodes, so the left child of node i is node i + 1 and its
+     * right child comes after the whole left subtree.
      * 
-     * @param node the current node
-     * @return the maximum depth of the tree
+     * @param maxDepth the maximum depth of the tree
+     * @return the bound of every node, by pre-order number
      */
-    private int calculateMaxDepth(Node node) {
-        if (node == null) {
-            return 0;
+    private int[] computeGainBounds(int maxDepth) {
+        int[] bounds = new int[size()];
+        // Post-order walk: a node is finished once its right subtree is done.
+        Node[] stack = newNodeArray(height());
+        int[] indices = new int[stack.length];
+        int top = 0;
+        int nextIndex = 0;
+        Node node = root;
+        Node lastFinished = null;
+        while (top > 0 || node != null) {
+            if (node != null) {
+                indices[top] = nextIndex++;
+                stack[top++] = node;
+                node = node.left;
+                continue;
+            }
+            Node peek = stack[top - 1];
+            if (peek.right != null && peek.right != lastFinished) {
+                node = peek.right;
+                continue;
+            }
+            top--;
+            bounds[indices[top]] = gainBound(peek, indices[top], top, maxDepth, bounds);
+            lastFinished = peek;
         }
-        return 1 + Math.max(calculateMaxDepth(node.left), calculateMaxDepth(node.right));
+        return bounds;
     }
 
     /**
-     * Reports all successful paths by printing them.
+     * Computes the gain bound of a node whose children already have theirs.
+     * 
+     * @param node the node
+     * @param index the pre-order number of the node
+     * @param currentDepth the depth of the node
+     * @param maxDepth the maximum depth of the tree
+     * @param bounds the bounds computed so far, by pre-order number
+     * @return the bound of the node, or NO_PATH if no leaf at the maximum depth is below it
      */
-    public void reportPaths() {
-        for (List<RestStop> path : successfulPaths) {
-            System.out.println(pathToString(path));
+    private int gainBound(Node node, int index, int currentDepth, int maxDepth, int[] bounds) {
+        int gain = rules.gain(node.getData());
+
+        if (node.left == null && node.right == null) {
+            return (currentDepth == maxDepth) ? gain : NO_PATH;
+        }
+        int childBound = NO_PATH;
+        if (node.left != null) {
+            childBound = Math.max(childBound, bounds[index + 1]);
         }
+        if (node.right != null) {
+            childBound = Math.max(childBound, bounds[index + 1 + subtreeSize(node.left)]);
+        }
+        return (childBound == NO_PATH) ? NO_PATH : gain - rules.stepTotal() + childBound;
     }
 
     /**
-     * Converts a path to a string representation.
+     * Returns the number of nodes in a subtree.
      * 
-     * @param path the path to convert
-     * @return the string representation of the path
+     * @param node the root of the subtree, or null
+     * @return the number of nodes, 0 for null
      */
-    private String pathToString(List<RestStop> path) {
-        return path.stream()
-                   .map(RestStop::getLabel)
-                   .collect(Collectors.joining(" "));
+    private int subtreeSize(Node node) {
+        return (node == null) ? 0 : node.subtreeSize;
+    }
+
+    /**
+     * Collects the supplies at a rest stop and checks if the hiker can survive it given
+     * the supplies carried on arrival.
+     * 
+     * @param stop the current rest stop
+     * @param supplies the supplies carried, one count per kind, updated in place
+     * @param isLeaf whether the current node is a leaf
+     * @return true if the hiker can survive, false otherwise
+     */
+    private boolean canSurvive(RestStop stop, int[] supplies, boolean isLeaf) {
+        int shortage = rules.arrive(supplies, stop, isLeaf);
+        if (shortage == SurvivalRules.SURVIVED) {
+            return true;
+        }
+        reject(rules.rejection(shortage));
+        return false;
+    }
+
+    private static void reject(MountainMetrics.Rejection rejection) {
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordRejection(rejection);
+        }
+    }
+
+    /**
+     * Records the outcome of a search in MountainMetrics if metrics are enabled.
+     * 
+     * @param visited the number of rest stops visited
+     * @param pruned the number of subtrees skipped by their gain bound
+     * @param pathsFound the number of successful paths found
+     */
+    private static void recordSearch(long visited, long pruned, long pathsFound) {
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordSearch(visited, pruned, pathsFound);
+        }
+    }
+
+    /**
+     * Calculates the maximum depth of the tree. Node heights are kept up to date by
+     * add and remove, so this does not walk the tree.
+     * 
+     * @return the maximum depth of the tree
+     */
+    private int calculateMaxDepth() {
+        return height();
+    }
+
+    /**
+     * Reports all successful paths by printing them.
+     */
+    public void reportPaths() {
+        for (MountainPath path : successfulPaths) {
+            System.out.println(path);
+        }
     }
 }
@@ -0,0 +1,969 @@
+package project5;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Stack;
+
+/**
+ * A B-tree with the same operations as BST. Every node keeps its elements in one sorted
+ * array, so a lookup touches a few wide nodes instead of one binary node per level, and
+ * an in-order scan reads each array from start to end. Internal nodes also keep the
+ * number of elements below each child, so get(int) skips whole subtrees without visiting
+ * them.
+ * <p>
+ * A tree of minimum degree t keeps between t - 1 and 2t - 1 elements in every node
+ * except the root, so its height stays logarithmic in its size whatever order elements
+ * are added in.
+ * 
+ * @param <E> the type of elements in this B-tree, which must be comparable
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class BTree<E extends Comparable<E>> implements SortedTree<E> {
+    /** The minimum degree used by the default constructor: 31 to 63 elements per node. */
+    public static final int DEFAULT_MIN_DEGREE = 32;
+
+    private final int minDegree;
+    private final int maxKeys;
+    private Node root;
+    private int size = 0;
+    private int height = 0;
+    private Node[] pathNodes = newNodeArray(8);
+    private int[] pathIndexes = new int[8];
+
+    /**
+     * A node of the B-tree. The arrays have room for one element and one child more than
+     * a node may keep, so that a node can overflow by one before it is split.
+     */
+    private class Node {
+        final Object[] keys;
+        int count;
+        /** The children, or null for a leaf. */
+        Node[] children;
+        /** The number of elements below each child, or null for a leaf. */
+        int[] sizes;
+
+        Node(boolean leaf) {
+            keys = new Object[maxKeys + 1];
+            if (!leaf) {
+                children = newNodeArray(maxKeys + 2);
+                sizes = new int[maxKeys + 2];
+            }
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+
+        @SuppressWarnings("unchecked")
+        E key(int i) {
+            return (E) keys[i];
+        }
+
+        /**
+         * Returns the number of elements in the subtree rooted at this node.
+         */
+        int subtreeSize() {
+            int total = count;
+            if (!isLeaf()) {
+                for (int i = 0; i <= count; i++) {
+                    total += sizes[i];
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Constructs an empty B-tree with the default minimum degree.
+     */
+    public BTree() {
+        this(DEFAULT_MIN_DEGREE);
+    }
+
+    /**
+     * Constructs an empty B-tree with the given minimum degree.
+     * 
+     * @param minDegree the minimum number of children of an internal node other than the root
+     * @throws IllegalArgumentException if minDegree is less than 2
+     */
+    public BTree(int minDegree) {
+        if (minDegree < 2) {
+            throw new IllegalArgumentException("Minimum degree must be at least 2: " + minDegree);
+        }
+        this.minDegree = minDegree;
+        this.maxKeys = 2 * minDegree - 1;
+    }
+
+    /**
+     * Constructs a B-tree with the default minimum degree from an array of elements.
+     * 
+     * @param elements an array of elements to add to the B-tree
+     */
+    public BTree(E[] elements) {
+        this();
+        for (E e : elements) {
+            add(e);
+        }
+    }
+
+    /**
+     * Searches one node for an element with a binary search.
+     * 
+     * @param node the node to search
+     * @param e the element to find
+     * @return the index of the element, or (-(insertion point) - 1) if it is not in the node
+     */
+    private int indexOf(Node node, E e) {
+        int low = 0;
+        int high = node.count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = e.compareTo(node.key(mid));
+            if (cmp > 0) {
+                low = mid + 1;
+            } else if (cmp < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Returns the most comparisons a binary search makes in a node with the given number
+     * of elements. Metrics count this instead of the exact number.
+     */
+    private static int probes(int count) {
+        return 32 - Integer.numberOfLeadingZeros(count);
+    }
+
+    /**
+     * Adds the specified element to the B-tree.
+     * 
+     * @param e the element to add
+     * @return true if the element was added, false if it was already present
+     */
+    public boolean add(E e) {
+        if (e == null) throw new NullPointerException("Cannot add null to the B-tree");
+        if (root == null) {
+            recordOperation(MountainMetrics.Operation.ADD, 0, 0);
+            root = new Node(true);
+            root.keys[0] = e;
+            root.count = 1;
+            size = 1;
+            height = 1;
+            return true;
+        }
+
+        ensurePathCapacity(height + 1);
+        int depth = 0;
+        int comparisons = 0;
+        Node node = root;
+        while (true) {
+            comparisons += probes(node.count);
+            int i = indexOf(node, e);
+            if (i >= 0) {
+                recordOperation(MountainMetrics.Operation.ADD, comparisons, depth);
+                clearPath(depth);
+                return false;
+            }
+            i = -i - 1;
+            pathNodes[depth] = node;
+            pathIndexes[depth] = i;
+            depth++;
+            if (node.isLeaf()) {
+                break;
+            }
+            node = node.children[i];
+        }
+        recordOperation(MountainMetrics.Operation.ADD, comparisons, depth - 1);
+
+        insertKey(node, pathIndexes[depth - 1], e);
+        for (int d = 0; d < depth - 1; d++) {
+            pathNodes[d].sizes[pathIndexes[d]]++;
+        }
+        // Split overflowing nodes from the leaf up, moving each median into the parent.
+        for (int d = depth - 1; d >= 0 && pathNodes[d].count > maxKeys; d--) {
+            split(pathNodes[d], (d > 0) ? pathNodes[d - 1] : null, (d > 0) ? pathIndexes[d - 1] : 0);
+        }
+        clearPath(depth);
+        size++;
+        return true;
+    }
+
+    /**
+     * Splits a node that holds one element too many into two, and moves the middle
+     * element up into the parent. A new root is created when the root is split.
+     * 
+     * @param full the node to split
+     * @param parent the parent of the node, or null if it is the root
+     * @param position the index of the node among the parent's children
+     */
+    private void split(Node full, Node parent, int position) {
+        int middle = full.count / 2;
+        Node right = new Node(full.isLeaf());
+        right.count = full.count - middle - 1;
+        System.arraycopy(full.keys, middle + 1, right.keys, 0, right.count);
+        if (!full.isLeaf()) {
+            System.arraycopy(full.children, middle + 1, right.children, 0, right.count + 1);
+            System.arraycopy(full.sizes, middle + 1, right.sizes, 0, right.count + 1);
+            for (int i = middle + 1; i <= full.count; i++) {
+                full.children[i] = null;
+                full.sizes[i] = 0;
+            }
+        }
+        Object median = full.keys[middle];
+        for (int i = middle; i < full.count; i++) {
+            full.keys[i] = null;
+        }
+        full.count = middle;
+
+        if (parent == null) {
+            parent = new Node(false);
+            parent.children[0] = full;
+            root = parent;
+            height++;
+        } else {
+            System.arraycopy(parent.keys, position, parent.keys, position + 1, parent.count - position);
+            System.arraycopy(parent.children, position + 1, parent.children, position + 2, parent.count - position);
+            System.arraycopy(parent.sizes, position + 1, parent.sizes, position + 2, parent.count - position);
+        }
+        parent.keys[position] = median;
+        parent.children[position + 1] = right;
+        parent.sizes[position] = full.subtreeSize();
+        parent.sizes[position + 1] = right.subtreeSize();
+        parent.count++;
+    }
+
+    private void insertKey(Node node, int i, E e) {
+        System.arraycopy(node.keys, i, node.keys, i + 1, node.count - i);
+        node.keys[i] = e;
+        node.count++;
+    }
+
+    /**
+     * Removes the specified element from the B-tree.
+     * 
+     * @param o the element to remove
+     * @return true if the element was removed, false if it was not found
+     */
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (o == null) {
+            throw new NullPointerException("Cannot remove null from the B-tree");
+        }
+        if (!(o instanceof Comparable)) {
+            throw new ClassCastException("Cannot compare object of type " + o.getClass().getName());
+        }
+        E e = (E) o;
+        if (root == null) {
+            return false;
+        }
+
+        ensurePathCapacity(height);
+        int depth = 0;
+        int comparisons = 0;
+        Node node = root;
+        int found;
+        while (true) {
+            comparisons += probes(node.count);
+            found = indexOf(node, e);
+            pathNodes[depth] = node;
+            pathIndexes[depth] = (found >= 0) ? found : -found - 1;
+            depth++;
+            if (found >= 0 || node.isLeaf()) {
+                break;
+            }
+            node = node.children[-found - 1];
+        }
+        recordOperation(MountainMetrics.Operation.REMOVE, comparisons, depth - 1);
+        if (found < 0) {
+            clearPath(depth);
+            return false;
+        }
+
+        if (!node.isLeaf()) {
+            // Replace the element with its predecessor and remove that from its leaf instead.
+            Node leaf = node.children[found];
+            while (!leaf.isLeaf()) {
+                pathNodes[depth] = leaf;
+                pathIndexes[depth] = leaf.count;
+                depth++;
+                leaf = leaf.children[leaf.count];
+            }
+            pathNodes[depth] = leaf;
+            pathIndexes[depth] = leaf.count - 1;
+            depth++;
+            node.keys[found] = leaf.keys[leaf.count - 1];
+            node = leaf;
+        }
+        removeKey(node, pathIndexes[depth - 1]);
+        for (int d = 0; d < depth - 1; d++) {
+            pathNodes[d].sizes[pathIndexes[d]]--;
+        }
+
+        // Refill nodes that fell below the minimum from the leaf up.
+        for (int d = depth - 1; d > 0 && pathNodes[d].count < minDegree - 1; d--) {
+            rebalance(pathNodes[d - 1], pathIndexes[d - 1]);
+        }
+        if (root.count == 0) {
+            root = root.isLeaf() ? null : root.children[0];
+            height--;
+        }
+        clearPath(depth);
+        size--;
+        return true;
+    }
+
+    private void removeKey(Node node, int i) {
+        System.arraycopy(node.keys, i + 1, node.keys, i, node.count - i - 1);
+        node.count--;
+        node.keys[node.count] = null;
+    }
+
+    /**
+     * Brings a child that fell below the minimum back up, by borrowing an element
+     * through the parent from a sibling that can spare one, or else by merging it
+     * with a sibling.
+     * 
+     * @param parent the parent of the child
+     * @param position the index of the child among the parent's children
+     */
+    private void rebalance(Node parent, int position) {
+        if (position > 0 && parent.children[position - 1].count >= minDegree) {
+            borrowFromLeft(parent, position);
+        } else if (position < parent.count && parent.children[position + 1].count >= minDegree) {
+            borrowFromRight(parent, position);
+        } else if (position > 0) {
+            merge(parent, position - 1);
+        } else {
+            merge(parent, position);
+        }
+    }
+
+    private void borrowFromLeft(Node parent, int position) {
+        Node left = parent.children[position - 1];
+        Node node = parent.children[position];
+        System.arraycopy(node.keys, 0, node.keys, 1, node.count);
+        node.keys[0] = parent.keys[position - 1];
+        parent.keys[position - 1] = left.keys[left.count - 1];
+        left.keys[left.count - 1] = null;
+        int moved = 1;
+        if (!node.isLeaf()) {
+            System.arraycopy(node.children, 0, node.children, 1, node.count + 1);
+            System.arraycopy(node.sizes, 0, node.sizes, 1, node.count + 1);
+            node.children[0] = left.children[left.count];
+            node.sizes[0] = left.sizes[left.count];
+            moved += left.sizes[left.count];
+            left.children[left.count] = null;
+            left.sizes[left.count] = 0;
+        }
+        left.count--;
+        node.count++;
+        parent.sizes[position - 1] -= moved;
+        parent.sizes[position] += moved;
+    }
+
+    private void borrowFromRight(Node parent, int position) {
+        Node node = parent.children[position];
+        Node right = parent.children[position + 1];
+        node.keys[node.count] = parent.keys[position];
+        parent.keys[position] = right.keys[0];
+        System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+        right.keys[right.count - 1] = null;
+        int moved = 1;
+        if (!node.isLeaf()) {
+            node.children[node.count + 1] = right.children[0];
+            node.sizes[node.count + 1] = right.sizes[0];
+            moved += right.sizes[0];
+            System.arraycopy(right.children, 1, right.children, 0, right.count);
+            System.arraycopy(right.sizes, 1, right.sizes, 0, right.count);
+            right.children[right.count] = null;
+            right.sizes[right.count] = 0;
+        }
+        right.count--;
+        node.count++;
+        parent.sizes[position + 1] -= moved;
+        parent.sizes[position] += moved;
+    }
+
+    /**
+     * Merges a child, the parent's element after it and the next child into one node.
+     * 
+     * @param parent the parent of the children
+     * @param position the index of the left child among the parent's children
+     */
+    private void merge(Node parent, int position) {
+        Node left = parent.children[position];
+        Node right = parent.children[position + 1];
+        left.keys[left.count] = parent.keys[position];
+        System.arraycopy(right.keys, 0, left.keys, left.count + 1, right.count);
+        if (!left.isLeaf()) {
+            System.arraycopy(right.children, 0, left.children, left.count + 1, right.count + 1);
+            System.arraycopy(right.sizes, 0, left.sizes, left.count + 1, right.count + 1);
+        }
+        left.count += right.count + 1;
+
+        parent.sizes[position] += parent.sizes[position + 1] + 1;
+        System.arraycopy(parent.keys, position + 1, parent.keys, position, parent.count - position - 1);
+        System.arraycopy(parent.children, position + 2, parent.children, position + 1, parent.count - position - 1);
+        System.arraycopy(parent.sizes, position + 2, parent.sizes, position + 1, parent.count - position - 1);
+        parent.count--;
+        parent.keys[parent.count] = null;
+        parent.children[parent.count + 1] = null;
+        parent.sizes[parent.count + 1] = 0;
+    }
+
+    /**
+     * Clears the B-tree, removing all elements.
+     */
+    public void clear() {
+        root = null;
+        size = 0;
+        height = 0;
+    }
+
+    /**
+     * Checks if the B-tree contains the specified element.
+     * 
+     * @param o the element to check for
+     * @return true if the element is found, false otherwise
+     */
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        if (o == null) throw new NullPointerException("B-tree does not permit null elements");
+        if (!(o instanceof Comparable)) throw new ClassCastException("Object of type " + o.getClass().getName() + " cannot be compared.");
+        E e = (E) o;
+        int comparisons = 0;
+        int depth = 0;
+        Node node = root;
+        while (node != null) {
+            comparisons += probes(node.count);
+            int i = indexOf(node, e);
+            if (i >= 0) {
+                recordOperation(MountainMetrics.Operation.CONTAINS, comparisons, depth);
+                return true;
+            }
+            node = node.isLeaf() ? null : node.children[-i - 1];
+            depth++;
+        }
+        recordOperation(MountainMetrics.Operation.CONTAINS, comparisons, depth);
+        return false;
+    }
+
+    /**
+     * Returns the size of the B-tree.
+     * 
+     * @return the number of elements in the B-tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if the B-tree is empty.
+     * 
+     * @return true if the B-tree is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the height of the B-tree, counted in nodes. This operation is O(1).
+     * 
+     * @return the height of the B-tree
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Returns the element at the specified index. The element counts kept in each node
+     * decide which child to descend into, so only the nodes on one path are visited.
+     * 
+     * @param index the index of the element to return
+     * @return the element at the specified index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Node node = root;
+        int depth = 0;
+        while (!node.isLeaf()) {
+            int child = 0;
+            while (index >= node.sizes[child]) {
+                index -= node.sizes[child];
+                if (index == 0) {
+                    recordOperation(MountainMetrics.Operation.GET, 0, depth);
+                    return node.key(child);
+                }
+                index--;
+                child++;
+            }
+            node = node.children[child];
+            depth++;
+        }
+        recordOperation(MountainMetrics.Operation.GET, 0, depth);
+        return node.key(index);
+    }
+
+    /**
+     * Finds the predecessor of the specified element.
+     * 
+     * @param e the element to find the predecessor of
+     * @return the predecessor of the element, or null if the element is not in the
+     *         B-tree or has no predecessor
+     */
+    public E predecessor(E e) {
+        Node[] nodes = newNodeArray(height);
+        int[] indexes = new int[Math.max(height, 1)];
+        int depth = locate(e, nodes, indexes, MountainMetrics.Operation.PREDECESSOR);
+        if (depth == 0) {
+            return null;
+        }
+        Node node = nodes[depth - 1];
+        int i = indexes[depth - 1];
+        if (!node.isLeaf()) {
+            return max(node.children[i]);
+        }
+        if (i > 0) {
+            return node.key(i - 1);
+        }
+        // The element is the first in its leaf: the predecessor is the element just
+        // before the nearest ancestor child that is not the first.
+        for (int d = depth - 2; d >= 0; d--) {
+            if (indexes[d] > 0) {
+                return nodes[d].key(indexes[d] - 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the successor of the specified element.
+     * 
+     * @param e the element to find the successor of
+     * @return the successor of the element, or null if the element is not in the
+     *         B-tree or has no successor
+     */
+    public E successor(E e) {
+        Node[] nodes = newNodeArray(height);
+        int[] indexes = new int[Math.max(height, 1)];
+        int depth = locate(e, nodes, indexes, MountainMetrics.Operation.SUCCESSOR);
+        if (depth == 0) {
+            return null;
+        }
+        Node node = nodes[depth - 1];
+        int i = indexes[depth - 1];
+        if (!node.isLeaf()) {
+            return min(node.children[i + 1]);
+        }
+        if (i < node.count - 1) {
+            return node.key(i + 1);
+        }
+        for (int d = depth - 2; d >= 0; d--) {
+            if (indexes[d] < nodes[d].count) {
+                return nodes[d].key(indexes[d]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches for an element and records the nodes on the way and the child taken in
+     * each. In the node holding the element, the index of the element is recorded.
+     * 
+     * @param e the element to find
+     * @param nodes receives the nodes from the root down
+     * @param indexes receives the child index taken in each node
+     * @param operation the operation the search is part of, for metrics
+     * @return the number of nodes recorded, or 0 if the element is not in the B-tree
+     */
+    private int locate(E e, Node[] nodes, int[] indexes, MountainMetrics.Operation operation) {
+        if (e == null) throw new NullPointerException("B-tree does not permit null elements");
+        int depth = 0;
+        int comparisons = 0;
+        Node node = root;
+        while (node != null) {
+            comparisons += probes(node.count);
+            int i = indexOf(node, e);
+            nodes[depth] = node;
+            indexes[depth] = (i >= 0) ? i : -i - 1;
+            depth++;
+            if (i >= 0) {
+                recordOperation(operation, comparisons, depth - 1);
+                return depth;
+            }
+            node = node.isLeaf() ? null : node.children[-i - 1];
+        }
+        recordOperation(operation, comparisons, depth);
+        return 0;
+    }
+
+    /**
+     * Returns the first (smallest) element currently in this B-tree.
+     * 
+     * @return the first (smallest) element currently in this B-tree
+     * @throws NoSuchElementException if the B-tree is empty
+     */
+    public E first() {
+        if (root == null) throw new NoSuchElementException("Set is empty");
+        return min(root);
+    }
+
+    /**
+     * Returns the last (largest) element currently in this B-tree.
+     * 
+     * @return the last (largest) element currently in this B-tree
+     * @throws NoSuchElementException if the B-tree is empty
+     */
+    public E last() {
+        if (root == null) throw new NoSuchElementException("Set is empty");
+        return max(root);
+    }
+
+    private E min(Node node) {
+        while (!node.isLeaf()) {
+            node = node.children[0];
+        }
+        return node.key(0);
+    }
+
+    private E max(Node node) {
+        while (!node.isLeaf()) {
+            node = node.children[node.count];
+        }
+        return node.key(node.count - 1);
+    }
+
+    /**
+     * Returns the elements between two bounds, both inclusive, in ascending order.
+     * The scan starts at the lower bound, so only the nodes that overlap the range
+     * are visited.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the elements e with from <= e <= to, in ascending order
+     */
+    public List<E> range(E from, E to) {
+        if (from == null || to == null) throw new NullPointerException("B-tree does not permit null elements");
+        List<E> elements = new ArrayList<>();
+        InorderIterator it = new InorderIterator(from);
+        while (it.hasNext()) {
+            E e = it.next();
+            if (to.compareTo(e) < 0) {
+                break;
+            }
+            elements.add(e);
+        }
+        return elements;
+    }
+
+    /**
+     * Prints the tree structure, one node per line with the elements of its children.
+     */
+    public void printTree() {
+        if (root == null) return;
+        Stack<Node> stack = new Stack<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            StringBuilder line = new StringBuilder();
+            appendKeys(line, node);
+            line.append(" ->");
+            if (!node.isLeaf()) {
+                for (int i = 0; i <= node.count; i++) {
+                    line.append(' ');
+                    appendKeys(line, node.children[i]);
+                }
+                for (int i = node.count; i >= 0; i--) {
+                    stack.push(node.children[i]);
+                }
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Returns a string representation of the B-tree in tree format, one node per line.
+     * 
+     * @return a string representation of the B-tree in tree format
+     */
+    public String toStringTreeFormat() {
+        StringBuilder sb = new StringBuilder();
+        if (root == null) {
+            return "null\n";
+        }
+        Stack<Node> stack = new Stack<>();
+        Stack<Integer> levels = new Stack<>();
+        stack.push(root);
+        levels.push(0);
+        while (!stack.isEmpty()) {
+            Node node = stack.pop();
+            int level = levels.pop();
+            if (level > 0) {
+                for (int i = 0; i < level - 1; i++) {
+                    sb.append("   ");
+                }
+                sb.append("|--");
+            }
+            appendKeys(sb, node);
+            sb.append('\n');
+            if (!node.isLeaf()) {
+                for (int i = node.count; i >= 0; i--) {
+                    stack.push(node.children[i]);
+                    levels.push(level + 1);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendKeys(StringBuilder sb, Node node) {
+        sb.append('[');
+        for (int i = 0; i < node.count; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(node.keys[i]);
+        }
+        sb.append(']');
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new InorderIterator(null);
+    }
+
+    /**
+     * Visits the elements in ascending order, keeping one frame per level: the node and
+     * the index of the next element to return from it.
+     */
+    private class InorderIterator implements Iterator<E> {
+        private final Node[] nodes = newNodeArray(height);
+        private final int[] indexes = new int[Math.max(height, 1)];
+        private int top = 0;
+
+        /**
+         * Starts at the given element, or at the first element if it is null.
+         */
+        InorderIterator(E from) {
+            Node node = root;
+            while (node != null) {
+                int i = (from == null) ? 0 : indexOf(node, from);
+                if (i >= 0 && from != null) {
+                    push(node, i);
+                    return;
+                }
+                i = (from == null) ? 0 : -i - 1;
+                push(node, i);
+                node = node.isLeaf() ? null : node.children[i];
+            }
+        }
+
+        private void push(Node node, int index) {
+            nodes[top] = node;
+            indexes[top] = index;
+            top++;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (top > 0 && indexes[top - 1] >= nodes[top - 1].count) {
+                nodes[--top] = null;
+            }
+            return top > 0;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Node node = nodes[top - 1];
+            int i = indexes[top - 1]++;
+            if (!node.isLeaf()) {
+                Node child = node.children[i + 1];
+                while (child != null) {
+                    push(child, 0);
+                    child = child.isLeaf() ? null : child.children[0];
+                }
+            }
+            return node.key(i);
+        }
+    }
+
+    /**
+     * Returns an iterator that visits the elements of every node before those of its
+     * children, with the children from left to right.
+     * 
+     * @return a preorder iterator
+     */
+    public Iterator<E> preorderIterator() {
+        return new PreorderIterator();
+    }
+
+    private class PreorderIterator implements Iterator<E> {
+        private final Stack<Node> stack = new Stack<>();
+        private Node current;
+        private int index;
+
+        PreorderIterator() {
+            if (root != null) {
+                stack.push(root);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (current != null && index < current.count) || !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            if (current == null || index >= current.count) {
+                current = stack.pop();
+                index = 0;
+                if (!current.isLeaf()) {
+                    for (int i = current.count; i >= 0; i--) {
+                        stack.push(current.children[i]);
+                    }
+                }
+            }
+            return current.key(index++);
+        }
+    }
+
+    /**
+     * Returns an iterator that visits the elements of every node after those of its
+     * children, with the children from left to right.
+     * 
+     * @return a postorder iterator
+     */
+    public Iterator<E> postorderIterator() {
+        return new PostorderIterator();
+    }
+
+    private class PostorderIterator implements Iterator<E> {
+        private final Stack<Node> stack = new Stack<>();
+        private Node current;
+        private int index;
+
+        PostorderIterator() {
+            // Nodes come off this stack in postorder, as in BST's postorder iterator.
+            Stack<Node> pending = new Stack<>();
+            if (root != null) {
+                pending.push(root);
+            }
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                stack.push(node);
+                if (!node.isLeaf()) {
+                    for (int i = 0; i <= node.count; i++) {
+                        pending.push(node.children[i]);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (current != null && index < current.count) || !stack.isEmpty();
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            if (current == null || index >= current.count) {
+                current = stack.pop();
+                index = 0;
+            }
+            return current.key(index++);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        BTree<?> other = (BTree<?>) obj;
+        if (this.size != other.size) {
+            return false;
+        }
+        Iterator<?> thisIter = this.iterator();
+        Iterator<?> otherIter = other.iterator();
+
+        while (thisIter.hasNext() && otherIter.hasNext()) {
+            if (!thisIter.next().equals(otherIter.next())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (E e : this) {
+            hash = 31 * hash + e.hashCode();
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        Iterator<E> it = iterator();
+        if (!it.hasNext()) {
+            return "[]";
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append('[');
+        while (it.hasNext()) {
+            sb.append(it.next());
+            if (it.hasNext()) {
+                sb.append(", ");
+            }
+        }
+        sb.append(']');
+        return sb.toString();
+    }
+
+    /**
+     * Records an operation in MountainMetrics if metrics are enabled.
+     */
+    private static void recordOperation(MountainMetrics.Operation operation, int comparisons, int depth) {
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordOperation(operation, comparisons, depth);
+        }
+    }
+
+    private void ensurePathCapacity(int capacity) {
+        if (pathNodes.length < capacity) {
+            pathNodes = newNodeArray(Math.max(capacity, pathNodes.length * 2));
+            pathIndexes = new int[pathNodes.length];
+        }
+    }
+
+    private void clearPath(int length) {
+        for (int i = 0; i < length; i++) {
+            pathNodes[i] = null;
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Node[] newNodeArray(int length) {
+        return (Node[]) new BTree.Node[Math.max(length, 1)];
+    }
+}
@@ -3,26 +3,37 @@ package project5;
 /**
  * Represents a hiker in the mountain climbing simulation.
  * Manages the hiker's supplies and provides methods to collect and use supplies.
+ * Supplies are counted per kind, as indexed by the hiker's SurvivalRules.
  * 
  * @version 1.0
  * @author Majo Salgado
  */
 public class Hiker {
     private String name;
-    private int foodCount;
-    private int raftCount;
-    private int axeCount;
+    private final SurvivalRules rules;
+    private final int[] supplies;
 
     /**
-     * Constructs a new Hiker with the specified name and initializes supply counts to zero.
+     * Constructs a new Hiker with the specified name under the default rules and
+     * initializes supply counts to zero.
      * 
      * @param name the name of the hiker
      */
     public Hiker(String name) {
+        this(name, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Constructs a new Hiker with the specified name under the given rules and
+     * initializes supply counts to zero.
+     * 
+     * @param name the name of the hiker
+     * @param rules the rules that say which supplies clear which obstacles
+     */
+    public Hiker(String name, SurvivalRules rules) {
         this.name = name;
-        this.foodCount = 0;
-        this.raftCount = 0;
-        this.axeCount = 0;
+        this.rules = rules;
+        this.supplies = new int[rules.supplyKinds()];
     }
 
     /**
@@ -32,20 +43,22 @@ public class Hiker {
      * @param quantity the quantity of the supply to add
      */
     public void collectSupplies(String supply, int quantity) {
-        switch (supply) {
-            case "food":
-                this.foodCount += quantity;
-                break;
-            case "raft":
-                this.raftCount += quantity;
-                break;
-            case "axe":
-                this.axeCount += quantity;
-                break;
-            default:
-                System.out.println("Unknown supply encountered: " + supply);
-                break;
+        int index = rules.supplyIndex(supply);
+        if (index < 0) {
+            System.out.println("Unknown supply encountered: " + supply);
+            return;
         }
+        collectSupplies(index, quantity);
+    }
+
+    /**
+     * Adds supplies of one kind to the hiker's inventory.
+     * 
+     * @param supply the index of the supply kind
+     * @param quantity the quantity of the supply to add
+     */
+    public void collectSupplies(int supply, int quantity) {
+        supplies[supply] += quantity;
     }
 
     /**
@@ -55,41 +68,42 @@ public class Hiker {
      * @return true if the hiker has the necessary supplies to overcome the obstacle, false otherwise
      */
     public boolean useSuppliesToOvercome(String obstacle) {
-        switch (obstacle) {
-            case "fallen tree":
-                return useAxe();
-            case "river":
-                return useRaft();
-            default:
-                System.out.println("Unknown obstacle encountered: " + obstacle);
-                return false;
+        int index = rules.obstacleIndex(obstacle);
+        if (index < 0) {
+            System.out.println("Unknown obstacle encountered: " + obstacle);
+            return false;
         }
+        return useSuppliesToOvercome(index);
     }
 
     /**
-     * Decreases the count of axes if available.
+     * Attempts to use supplies to overcome an obstacle. Nothing is used up if the hiker
+     * does not carry everything the obstacle needs.
      * 
-     * @return true if an axe was used successfully, false otherwise
+     * @param obstacle the index of the obstacle kind
+     * @return true if the hiker has the necessary supplies to overcome the obstacle, false otherwise
      */
-    private boolean useAxe() {
-        if (axeCount > 0) {
-            axeCount--;
-            return true;
-        }
-        return false;
+    public boolean useSuppliesToOvercome(int obstacle) {
+        return rules.clear(supplies, obstacle) == SurvivalRules.SURVIVED;
     }
 
     /**
-     * Decreases the count of rafts if available.
+     * Attempts to use the supplies needed for one step down the mountain.
      * 
-     * @return true if a raft was used successfully, false otherwise
+     * @return true if the hiker has the necessary supplies, false otherwise
      */
-    private boolean useRaft() {
-        if (raftCount > 0) {
-            raftCount--;
-            return true;
-        }
-        return false;
+    public boolean takeStep() {
+        return rules.step(supplies) == SurvivalRules.SURVIVED;
+    }
+
+    /**
+     * Returns how many supplies of one kind the hiker carries.
+     * 
+     * @param supply the index of the supply kind
+     * @return the number carried
+     */
+    public int getSupplyCount(int supply) {
+        return supplies[supply];
     }
 
     /**
@@ -98,12 +112,11 @@ public class Hiker {
      * @return a string representation of the hiker's current supplies
      */
     public String getSuppliesInfo() {
-        return "Hiker{" +
-               "name='" + name + '\'' +
-               ", foodCount=" + foodCount +
-               ", raftCount=" + raftCount +
-               ", axeCount=" + axeCount +
-               '}';
+        StringBuilder info = new StringBuilder("Hiker{name='").append(name).append('\'');
+        for (int i = 0; i < supplies.length; i++) {
+            info.append(", ").append(rules.supplyName(i)).append("Count=").append(supplies[i]);
+        }
+        return info.append('}').toString();
     }
 
     @Override
@@ -111,4 +124,3 @@ public class Hiker {
         return getSuppliesInfo();
     }
 }
-
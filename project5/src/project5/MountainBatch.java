@@ -0,0 +1,357 @@
+package project5;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads and explores many mountain files in one JVM, several at a time. Every file
+ * is handled on its own: its paths go to its own buffered output, and an error in one
+ * file is reported for that file without stopping the others.
+ * <p>
+ * Files are explored at most {@value #FILES_AHEAD_PER_THREAD} per thread ahead of the
+ * one whose output is printed next, so only that many outputs are held in memory at once.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class MountainBatch {
+    /** The number of files per thread that may be explored ahead of the one printed next. */
+    public static final int FILES_AHEAD_PER_THREAD = 2;
+
+    private final int threads;
+    private final File outputDirectory;
+    private final SurvivalRules rules;
+
+    /**
+     * The outcome of exploring one file.
+     */
+    public static class Result {
+        private final File input;
+        private int restStops;
+        private int paths;
+        private long loadNanos;
+        private long exploreNanos;
+        private String output;
+        private String error;
+
+        Result(File input) {
+            this.input = input;
+        }
+
+        /**
+         * Returns the file that was explored.
+         * 
+         * @return the input file
+         */
+        public File getInput() {
+            return input;
+        }
+
+        /**
+         * Returns the number of successful paths found.
+         * 
+         * @return the number of successful paths
+         */
+        public int getPaths() {
+            return paths;
+        }
+
+        /**
+         * Returns the error message, or null if the file was explored successfully.
+         * 
+         * @return the error message, or null
+         */
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * Returns the time spent loading and exploring the file.
+         * 
+         * @return the time in nanoseconds
+         */
+        public long getNanos() {
+            return loadNanos + exploreNanos;
+        }
+    }
+
+    /**
+     * Constructs a batch that explores files on the given number of threads under the
+     * default rules.
+     * 
+     * @param threads the number of files to explore at once
+     * @param outputDirectory the directory to write one {@code <file>.out} per input to,
+     *                        or null to keep the output for printing in input order
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public MountainBatch(int threads, File outputDirectory) {
+        this(threads, outputDirectory, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Constructs a batch that explores files on the given number of threads under the
+     * given rules.
+     * 
+     * @param threads the number of files to explore at once
+     * @param outputDirectory the directory to write one {@code <file>.out} per input to,
+     *                        or null to keep the output for printing in input order
+     * @param rules the rules every file is loaded and explored under
+     * @throws IllegalArgumentException if threads is less than 1
+     */
+    public MountainBatch(int threads, File outputDirectory, SurvivalRules rules) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Thread count must be at least 1: " + threads);
+        }
+        this.threads = threads;
+        this.outputDirectory = outputDirectory;
+        this.rules = rules;
+    }
+
+    /**
+     * Explores the given files and prints their paths in input order, or writes them to
+     * the output directory, followed by a summary on the given error stream.
+     * 
+     * @param inputs the files to explore
+     * @param out the stream for paths when there is no output directory
+     * @param summary the stream for errors and the summary
+     * @return the results, in input order
+     * @throws InterruptedException if the thread is interrupted while waiting
+     * @throws IllegalArgumentException if two inputs would be written to the same file
+     *                                  in the output directory
+     */
+    public List<Result> run(List<File> inputs, PrintStream out, PrintStream summary) throws InterruptedException {
+        if (outputDirectory != null) {
+            checkOutputNames(inputs);
+        }
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Result> results = new ArrayList<>();
+        try {
+            Iterator<File> remaining = inputs.iterator();
+            Deque<Future<Result>> pending = new ArrayDeque<>();
+            while (remaining.hasNext() || !pending.isEmpty()) {
+                while (remaining.hasNext() && pending.size() < threads * FILES_AHEAD_PER_THREAD) {
+                    File input = remaining.next();
+                    pending.add(executor.submit(() -> explore(input)));
+                }
+                Result result = pending.poll().get();
+                if (result.error != null) {
+                    summary.println("Error: " + result.input + ": " + result.error);
+                } else if (result.output != null) {
+                    out.print(result.output);
+                }
+                result.output = null;
+                results.add(result);
+            }
+        } catch (ExecutionException e) {
+            // explore catches every exception a single file can throw, but not errors.
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        out.flush();
+        printSummary(results, System.nanoTime() - start, summary);
+        return results;
+    }
+
+    /**
+     * Checks that no two inputs share a name, since their outputs would be written to
+     * the same file at the same time.
+     * 
+     * @param inputs the files to explore
+     * @throws IllegalArgumentException if two inputs have the same name
+     */
+    private static void checkOutputNames(List<File> inputs) {
+        Map<String, File> byName = new HashMap<>();
+        for (File input : inputs) {
+            File other = byName.putIfAbsent(input.getName(), input);
+            if (other != null) {
+                throw new IllegalArgumentException("The files '" + other + "' and '" + input
+                        + "' would both be written to '" + input.getName() + ".out'.");
+            }
+        }
+    }
+
+    /**
+     * Loads and explores one file. Exceptions are recorded in the result; errors such as
+     * running out of memory are not, since the JVM may not be usable after them.
+     * 
+     * @param input the file to explore
+     * @return the result for the file
+     */
+    private Result explore(File input) {
+        Result result = new Result(input);
+        try {
+            long start = System.nanoTime();
+            BSTMountain mountain = new BSTMountain(rules);
+            MountainClimb.loadMountainFromFile(mountain, input);
+            result.restStops = mountain.size();
+            long loaded = System.nanoTime();
+            result.loadNanos = loaded - start;
+
+            List<MountainPath> paths = mountain.findSuccessfulPaths();
+            result.paths = paths.size();
+            if (outputDirectory != null) {
+                File outputFile = new File(outputDirectory, input.getName() + ".out");
+                try (Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 16)) {
+                    writePaths(paths, writer);
+                }
+            } else {
+                StringWriter writer = new StringWriter();
+                writePaths(paths, writer);
+                result.output = writer.toString();
+            }
+            result.exploreNanos = System.nanoTime() - loaded;
+        } catch (IOException e) {
+            result.error = e.getMessage();
+        } catch (RuntimeException e) {
+            result.error = e.toString();
+        }
+        return result;
+    }
+
+    private static void writePaths(List<MountainPath> paths, Writer writer) throws IOException {
+        for (MountainPath path : paths) {
+            path.appendTo(writer);
+            writer.write('\n');
+        }
+    }
+
+    private void printSummary(List<Result> results, long wallNanos, PrintStream summary) {
+        int failed = 0;
+        long restStops = 0;
+        long paths = 0;
+        long loadNanos = 0;
+        long exploreNanos = 0;
+        for (Result result : results) {
+            if (result.error != null) {
+                failed++;
+            }
+            restStops += result.restStops;
+            paths += result.paths;
+            loadNanos += result.loadNanos;
+            exploreNanos += result.exploreNanos;
+        }
+        double seconds = wallNanos / 1e9;
+        summary.printf("Batch: %d files (%d failed) on %d threads in %.3f s%n",
+                results.size(), failed, threads, seconds);
+        summary.printf("  %d rest stops, %d paths%n", restStops, paths);
+        summary.printf("  throughput: %.1f files/s, %.0f rest stops/s%n",
+                results.size() / seconds, restStops / seconds);
+        summary.printf("  time in files: load %.3f s, explore %.3f s%n", loadNanos / 1e9, exploreNanos / 1e9);
+
+        List<Result> slowest = new ArrayList<>(results);
+        slowest.sort(Comparator.comparingLong(Result::getNanos).reversed());
+        for (Result result : slowest.subList(0, Math.min(5, slowest.size()))) {
+            summary.printf("  %10.3f ms  %s%n", result.getNanos() / 1e6, result.input);
+        }
+    }
+
+    /**
+     * Expands the given paths into the files to explore. A directory stands for the
+     * regular files directly inside it, in name order.
+     * 
+     * @param paths file and directory names
+     * @return the files to explore
+     * @throws IllegalArgumentException if a path does not exist
+     */
+    public static List<File> expand(List<String> paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (file.isDirectory()) {
+                File[] children = file.listFiles(File::isFile);
+                if (children != null) {
+                    Arrays.sort(children);
+                    files.addAll(Arrays.asList(children));
+                }
+            } else if (file.isFile()) {
+                files.add(file);
+            } else {
+                throw new IllegalArgumentException("The file '" + path + "' was not found.");
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Runs a batch from command line arguments.
+     * 
+     * @param args {@code [--threads <n>] [--out <dir>] [--rules <file>] <file|dir>...}
+     * @param rules the rules to use unless {@code --rules} loads others from a
+     *              properties file
+     * @return the exit code: 0 if every file was explored, 1 otherwise
+     */
+    static int run(String[] args, SurvivalRules rules) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File outputDirectory = null;
+        List<String> paths = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--threads") && i + 1 < args.length) {
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--out") && i + 1 < args.length) {
+                    outputDirectory = new File(args[++i]);
+                    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+                        throw new IllegalArgumentException("Cannot create directory '" + outputDirectory + "'.");
+                    }
+                } else if (args[i].equals("--rules") && i + 1 < args.length) {
+                    rules = loadRules(args[++i]);
+                } else {
+                    paths.add(args[i]);
+                }
+            }
+            if (paths.isEmpty()) {
+                throw new IllegalArgumentException("No input files given.");
+            }
+
+            MountainBatch batch = new MountainBatch(threads, outputDirectory, rules);
+            List<Result> results = batch.run(expand(paths), System.out, System.err);
+            for (Result result : results) {
+                if (result.error != null) {
+                    return 1;
+                }
+            }
+            return 0;
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            return 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Error: interrupted");
+            return 1;
+        }
+    }
+
+    private static SurvivalRules loadRules(String fileName) {
+        try {
+            return SurvivalRules.load(new File(fileName));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot load rules from '" + fileName + "': " + e.getMessage(), e);
+        }
+    }
+}
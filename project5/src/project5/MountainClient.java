@@ -0,0 +1,103 @@
+package project5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A client for MountainServer. It keeps one connection open, so any number of commands
+ * can be sent without reconnecting.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class MountainClient implements AutoCloseable {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    /**
+     * Connects to a MountainServer on the loopback address.
+     * 
+     * @param port the port the server listens on
+     * @throws IOException if the connection cannot be made
+     */
+    public MountainClient(int port) throws IOException {
+        socket = new Socket(InetAddress.getLoopbackAddress(), port);
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a command and waits for its result.
+     * 
+     * @param command the command, for example {@code CONTAINS sample J}
+     * @return the result lines, without their prefix and the closing OK
+     * @throws IOException if the connection fails or the reply is not understood
+     * @throws IllegalArgumentException if the server rejects the command
+     */
+    public List<String> send(String command) throws IOException {
+        out.write(command + "\n");
+        out.flush();
+
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.equals("OK")) {
+                return lines;
+            }
+            if (line.startsWith("ERROR ")) {
+                throw new IllegalArgumentException(line.substring("ERROR ".length()));
+            }
+            if (!line.startsWith("= ")) {
+                throw new IOException("Unexpected reply from the server: " + line);
+            }
+            lines.add(line.substring("= ".length()));
+        }
+        throw new IOException("The server closed the connection");
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.write("QUIT\n");
+            out.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Main method to send one command to a running server and print the result.
+     * 
+     * @param args the port followed by the words of the command
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java MountainClient <port> <command> [arguments...]");
+            System.exit(1);
+        }
+
+        try (MountainClient client = new MountainClient(Integer.parseInt(args[0]))) {
+            String command = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+            for (String line : client.send(command)) {
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
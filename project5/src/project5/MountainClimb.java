@@ -2,9 +2,10 @@ package project5;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * The MountainClimb class is the entry point for the mountain climbing simulation.
@@ -15,32 +16,73 @@ import java.util.regex.Pattern;
  * @author Majo Salgado
  */
 public class MountainClimb {
-
     /**
      * Main method to run the mountain climbing simulation.
      * 
-     * @param args command line arguments, expects a single argument specifying the input file name
+     * @param args command line arguments, expects the input file name optionally followed by
+     *             a query mode: {@code --first} for the first path in label order or
+     *             {@code --top <k>} for the k paths with the most leftover supplies.
+     *             The input file name may be preceded by {@code --rules <file>} to load
+     *             the SurvivalRules from a properties file instead of using the default.
+     *             {@code --batch [--threads <n>] [--out <dir>] [--rules <file>] <file|dir>...}
+     *             explores many files at once instead, and may be preceded by
+     *             {@code --rules <file>} as well
      */
     public static void main(String[] args) {
-        if (args.length != 1) {
-            System.err.println("Usage: java MountainClimb <inputFileName>");
+        SurvivalRules rules = SurvivalRules.DEFAULT;
+        if (args.length > 1 && args[0].equals("--rules")) {
+            try {
+                rules = SurvivalRules.load(new File(args[1]));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: Cannot load rules from '" + args[1] + "': " + e.getMessage());
+                System.exit(1);
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(MountainBatch.run(Arrays.copyOfRange(args, 1, args.length), rules));
+        }
+        if (args.length != 1 && !(args.length == 2 && args[1].equals("--first"))
+                && !(args.length == 3 && args[1].equals("--top"))) {
+            System.err.println("Usage: java MountainClimb [--rules <file>] <inputFileName> [--first | --top <k>]");
+            System.err.println("       java MountainClimb [--rules <file>] --batch [--threads <n>] [--out <dir>] "
+                    + "[--rules <file>] <file|dir>...");
             System.exit(1);
         }
 
         String inputFileName = args[0];
         File inputFile = new File(inputFileName);
 
-        BSTMountain mountain = new BSTMountain();
+        BSTMountain mountain = new BSTMountain(rules);
         try {
             loadMountainFromFile(mountain, inputFile);
-            mountain.explore();
+            if (args.length == 1) {
+                mountain.explore();
+            } else if (args.length == 2) {
+                MountainPath path = mountain.findFirstPath();
+                if (path != null) {
+                    System.out.println(path);
+                }
+            } else {
+                for (MountainPath path : mountain.findTopPaths(Integer.parseInt(args[2]))) {
+                    System.out.println(path);
+                }
+            }
         } catch (FileNotFoundException e) {
             System.err.println("Error: The file '" + inputFileName + "' was not found.");
             System.exit(1);
+        } catch (NumberFormatException e) {
+            System.err.println("Error: '" + args[2] + "' is not a valid number of paths.");
+            System.exit(1);
         } catch (Exception e) {
             System.err.println("An unexpected error occurred: " + e.getMessage());
             System.exit(1);
         }
+
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.reportShape(System.err, mountain);
+            MountainMetrics.report(System.err);
+        }
     }
 
     /**
@@ -50,15 +92,20 @@ public class MountainClimb {
      * @param file The file to read from.
      * @throws FileNotFoundException if the specified file does not exist.
      */
-    private static void loadMountainFromFile(BSTMountain mountain, File file) throws FileNotFoundException {
-        Scanner scanner = new Scanner(file);
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            if (!line.trim().isEmpty()) {
-                parseLineAndAddToMountain(mountain, line.trim());
+    static void loadMountainFromFile(BSTMountain mountain, File file) throws FileNotFoundException {
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.LOAD, file.getPath());
+        try {
+            Scanner scanner = new Scanner(file);
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine();
+                if (!line.trim().isEmpty()) {
+                    parseLineAndAddToMountain(mountain, line.trim());
+                }
             }
+            scanner.close();
+        } finally {
+            timer.close();
         }
-        scanner.close();
     }
 
     /**
@@ -68,48 +115,58 @@ public class MountainClimb {
      * @param line The line to parse.
      */
     private static void parseLineAndAddToMountain(BSTMountain mountain, String line) {
+        RestStop restStop = parseRestStop(line, mountain.getRules());
+        if (restStop == null) return;
+
+        if (MountainMetrics.isEnabled()) {
+            long start = System.nanoTime();
+            mountain.add(restStop);
+            MountainMetrics.recordPhase(MountainMetrics.Phase.BUILD, System.nanoTime() - start);
+        } else {
+            mountain.add(restStop);
+        }
+    }
+
+    /**
+     * Parses a single line of a mountain file into a rest stop under the default rules.
+     * 
+     * @param line The line to parse.
+     * @return The rest stop described by the line.
+     */
+    static RestStop parseRestStop(String line) {
+        return parseRestStop(line, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Parses a single line of a mountain file into a rest stop. Supplies that come after
+     * the first obstacle on the line are ignored.
+     * 
+     * @param line The line to parse.
+     * @param rules The rules that say which items are supplies and which are obstacles.
+     * @return The rest stop described by the line.
+     */
+    static RestStop parseRestStop(String line, SurvivalRules rules) {
         String[] parts = line.trim().split("\\s+", 2);
-        if (parts.length == 0) return;
+        if (parts.length == 0) return null;
 
         String label = parts[0];
-        RestStop restStop = new RestStop(label);
+        RestStop restStop = new RestStop(label, rules);
 
         if (parts.length > 1) {
             String details = parts[1];
-            Pattern pattern = Pattern.compile("food|raft|axe|fallen tree|river");
-            Matcher matcher = pattern.matcher(details);
+            Matcher matcher = rules.itemPattern().matcher(details);
 
             boolean foundObstacle = false;
             while (matcher.find()) {
-                String match = matcher.group();
-                if (isObstacle(match)) {
+                int item = rules.item(matcher);
+                if (item >= rules.supplyKinds()) {
                     foundObstacle = true;
-                    restStop.addObstacle(match);
-                } else if (!foundObstacle && isSupply(match)) {
-                    restStop.addSupply(match);
+                    restStop.addObstacle(item - rules.supplyKinds(), 1);
+                } else if (!foundObstacle) {
+                    restStop.addSupply(item, 1);
                 }
             }
         }
-        mountain.add(restStop);
-    }
-
-    /**
-     * Checks if the given item is a supply.
-     * 
-     * @param item the item to check
-     * @return true if the item is a supply, false otherwise
-     */
-    private static boolean isSupply(String item) {
-        return item.equals("food") || item.equals("raft") || item.equals("axe");
-    }
-
-    /**
-     * Checks if the given item is an obstacle.
-     * 
-     * @param item the item to check
-     * @return true if the item is an obstacle, false otherwise
-     */
-    private static boolean isObstacle(String item) {
-        return item.equals("fallen tree") || item.equals("river");
+        return restStop;
     }
 }
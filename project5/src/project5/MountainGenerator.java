@@ -0,0 +1,275 @@
+package project5;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates mountain files in the format read by MountainClimb. Labels are zero-padded
+ * numbers, so their label order is their numeric order, and the order in which they are
+ * written decides the shape of the resulting tree. Every line is written as soon as it is
+ * generated, so files of any size can be produced with a small, constant amount of memory.
+ * The same seed always produces the same file.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class MountainGenerator {
+
+    /**
+     * The order in which labels are written to the file.
+     */
+    public enum LabelOrder {
+        /** Ascending labels, which build a tree that leans right all the way down. */
+        SORTED,
+        /** A seeded random order, which builds a tree of logarithmic height on average. */
+        RANDOM,
+        /** Alternating smallest and largest remaining labels, which build a zig-zag chain. */
+        ZIGZAG,
+        /** Medians first, level by level, which builds a perfectly balanced tree. */
+        BALANCED
+    }
+
+    private static final String[] SUPPLIES = {"food", "raft", "axe"};
+    private static final String[] OBSTACLES = {"fallen tree", "river"};
+
+    private final long lineCount;
+    private final LabelOrder order;
+    private final long seed;
+    private final Map<String, Double> densities = new LinkedHashMap<>();
+
+    /**
+     * Constructs a generator with the default densities: food at 90% of the rest stops,
+     * rafts and axes at 20% each, and fallen trees and rivers at 10% each.
+     * 
+     * @param lineCount the number of rest stops to generate
+     * @param order the order in which labels are written
+     * @param seed the seed for the random choices
+     * @throws IllegalArgumentException if lineCount is negative
+     */
+    public MountainGenerator(long lineCount, LabelOrder order, long seed) {
+        if (lineCount < 0) {
+            throw new IllegalArgumentException("Line count must not be negative: " + lineCount);
+        }
+        this.lineCount = lineCount;
+        this.order = order;
+        this.seed = seed;
+        densities.put("food", 0.9);
+        densities.put("raft", 0.2);
+        densities.put("axe", 0.2);
+        densities.put("fallen tree", 0.1);
+        densities.put("river", 0.1);
+    }
+
+    /**
+     * Sets the fraction of rest stops that carry the given supply or obstacle.
+     * 
+     * @param item a supply ("food", "raft", "axe") or obstacle ("fallen tree", "river")
+     * @param density the fraction of rest stops, between 0 and 1
+     * @throws IllegalArgumentException if the item is unknown or the density is out of range
+     */
+    public void setDensity(String item, double density) {
+        if (!densities.containsKey(item)) {
+            throw new IllegalArgumentException("Unknown supply or obstacle: " + item);
+        }
+        if (!(density >= 0 && density <= 1)) {
+            throw new IllegalArgumentException("Density must be between 0 and 1: " + density);
+        }
+        densities.put(item, density);
+    }
+
+    /**
+     * Writes the mountain to a file.
+     * 
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(File file) throws IOException {
+        try (Writer out = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16)) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the mountain to the given writer, one rest stop per line. The writer is
+     * neither buffered nor closed by this method.
+     * 
+     * @param out the writer to write to
+     * @throws IOException if writing fails
+     */
+    public void write(Writer out) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        int width = Long.toString(Math.max(lineCount - 1, 0)).length();
+        char[] label = new char[width];
+        StringBuilder line = new StringBuilder(64);
+
+        LabelSequence labels = new LabelSequence(lineCount, order, seed);
+        for (long i = 0; i < lineCount; i++) {
+            formatLabel(labels.next(), label);
+            line.setLength(0);
+            line.append(label);
+            for (String supply : SUPPLIES) {
+                if (random.nextDouble() < densities.get(supply)) {
+                    line.append(' ').append(supply);
+                }
+            }
+            for (String obstacle : OBSTACLES) {
+                if (random.nextDouble() < densities.get(obstacle)) {
+                    line.append(' ').append(obstacle);
+                }
+            }
+            line.append('\n');
+            out.append(line);
+        }
+    }
+
+    /**
+     * Writes a number into a fixed-width, zero-padded label.
+     */
+    private static void formatLabel(long number, char[] label) {
+        for (int i = label.length - 1; i >= 0; i--) {
+            label[i] = (char) ('0' + number % 10);
+            number /= 10;
+        }
+    }
+
+    /**
+     * Produces the numbers 0 to count - 1 in a given order, one at a time, without
+     * holding them in memory.
+     */
+    private static class LabelSequence {
+        private final long count;
+        private final LabelOrder order;
+        private long index = 0;
+
+        // RANDOM: a seeded bijection on [0, 2^bits), walked until it lands below count.
+        private final int bits;
+        private final long mask;
+        private final long multiplier;
+        private final long offset;
+
+        // BALANCED: the level and position within the level of the next median.
+        private int level = 0;
+        private long position = 0;
+
+        LabelSequence(long count, LabelOrder order, long seed) {
+            this.count = count;
+            this.order = order;
+            this.bits = Math.max(1, 64 - Long.numberOfLeadingZeros(Math.max(count - 1, 1)));
+            this.mask = (bits == 64) ? -1L : (1L << bits) - 1;
+            SplittableRandom random = new SplittableRandom(seed);
+            this.multiplier = random.nextLong() | 1;
+            this.offset = random.nextLong();
+        }
+
+        long next() {
+            long i = index++;
+            switch (order) {
+                case SORTED:
+                    return i;
+                case ZIGZAG:
+                    return (i % 2 == 0) ? i / 2 : count - 1 - i / 2;
+                case RANDOM:
+                    long value = i;
+                    do {
+                        value = permute(value);
+                    } while (value >= count);
+                    return value;
+                case BALANCED:
+                default:
+                    return nextMedian();
+            }
+        }
+
+        private long permute(long value) {
+            value = (value * multiplier + offset) & mask;
+            value ^= value >>> ((bits + 1) / 2);
+            value = (value * multiplier) & mask;
+            return value;
+        }
+
+        /**
+         * Returns the median of the next non-empty range in level order. The range of a
+         * position is found by halving [0, count) once per level, following the bits of
+         * the position from the top.
+         */
+        private long nextMedian() {
+            while (true) {
+                if (position == (1L << level)) {
+                    level++;
+                    position = 0;
+                }
+                long low = 0;
+                long high = count - 1;
+                for (int bit = level - 1; bit >= 0 && low <= high; bit--) {
+                    long mid = (low + high) >>> 1;
+                    if (((position >>> bit) & 1) == 0) {
+                        high = mid - 1;
+                    } else {
+                        low = mid + 1;
+                    }
+                }
+                position++;
+                if (low <= high) {
+                    return (low + high) >>> 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Main method to generate a mountain file.
+     * 
+     * @param args the output file name and line count, followed by optional settings:
+     *             {@code --order sorted|random|zigzag|balanced}, {@code --seed <n>} and
+     *             {@code --<item> <density>} for food, raft, axe, fallen-tree and river
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length % 2 != 0) {
+            System.err.println("Usage: java MountainGenerator <outputFileName> <lineCount>"
+                    + " [--order sorted|random|zigzag|balanced] [--seed <n>]"
+                    + " [--food|--raft|--axe|--fallen-tree|--river <density>]");
+            System.exit(1);
+        }
+
+        try {
+            long lineCount = Long.parseLong(args[1]);
+            LabelOrder order = LabelOrder.RANDOM;
+            long seed = 1;
+            Map<String, Double> densities = new LinkedHashMap<>();
+            for (int i = 2; i < args.length; i += 2) {
+                String option = args[i];
+                String value = args[i + 1];
+                if (option.equals("--order")) {
+                    order = LabelOrder.valueOf(value.toUpperCase());
+                } else if (option.equals("--seed")) {
+                    seed = Long.parseLong(value);
+                } else if (option.startsWith("--")) {
+                    densities.put(option.substring(2).replace('-', ' '), Double.parseDouble(value));
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+
+            MountainGenerator generator = new MountainGenerator(lineCount, order, seed);
+            for (Map.Entry<String, Double> density : densities.entrySet()) {
+                generator.setDensity(density.getKey(), density.getValue());
+            }
+            generator.write(new File(args[0]));
+        } catch (IOException e) {
+            System.err.println("Error: could not write '" + args[0] + "': " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
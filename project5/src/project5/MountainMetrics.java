@@ -0,0 +1,356 @@
+package project5;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Opt-in counters and histograms for the hot paths of BST, BSTMountain and MountainClimb.
+ * Metrics are off unless the JVM is started with {@code -Dproject5.metrics=true} or
+ * {@link #setEnabled(boolean)} is called. While they are off every hook is a single
+ * static field check, so the instrumented code runs at full speed.
+ * <p>
+ * The phases of a run (loading, exploring, reporting) are also recorded as
+ * {@code project5.Phase} JFR events, so they show up in a flight recording next to
+ * GC and allocation data.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public final class MountainMetrics {
+
+    /**
+     * The BST operations that are measured.
+     */
+    public enum Operation {
+        ADD, REMOVE, CONTAINS, GET, PREDECESSOR, SUCCESSOR
+    }
+
+    /**
+     * The reasons a path down the mountain fails at a rest stop.
+     */
+    public enum Rejection {
+        NO_FOOD, NO_AXE, NO_RAFT,
+        /** A supply kind other than food, axe or raft, added through SurvivalRules. */
+        NO_SUPPLY
+    }
+
+    /**
+     * The phases of a mountain run.
+     */
+    public enum Phase {
+        /** Reading a mountain file, which covers both parsing and building. */
+        LOAD,
+        /** Parsing rest stops out of a mountain file. */
+        PARSE,
+        /** Adding parsed rest stops to the mountain. */
+        BUILD,
+        /** Searching the mountain for successful paths. */
+        EXPLORE,
+        /** Printing the successful paths. */
+        REPORT
+    }
+
+    private static boolean enabled = Boolean.getBoolean("project5.metrics");
+
+    private static final Map<Operation, Histogram> COMPARISONS = new EnumMap<>(Operation.class);
+    private static final Map<Operation, Histogram> DEPTHS = new EnumMap<>(Operation.class);
+    private static final Map<Rejection, LongAdder> REJECTIONS = new EnumMap<>(Rejection.class);
+    private static final Map<Phase, Histogram> PHASE_NANOS = new EnumMap<>(Phase.class);
+    private static final LongAdder ROTATIONS = new LongAdder();
+    private static final LongAdder NODES_VISITED = new LongAdder();
+    private static final LongAdder NODES_PRUNED = new LongAdder();
+    private static final LongAdder PATHS_FOUND = new LongAdder();
+
+    static {
+        for (Operation operation : Operation.values()) {
+            COMPARISONS.put(operation, new Histogram());
+            DEPTHS.put(operation, new Histogram());
+        }
+        for (Rejection rejection : Rejection.values()) {
+            REJECTIONS.put(rejection, new LongAdder());
+        }
+        for (Phase phase : Phase.values()) {
+            PHASE_NANOS.put(phase, new Histogram());
+        }
+    }
+
+    private MountainMetrics() {
+    }
+
+    /**
+     * Returns whether metrics are being recorded.
+     * 
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns metrics on or off. This is meant to be called once at startup; threads that
+     * are already running may keep seeing the old setting for a while.
+     * 
+     * @param enabled true to record metrics
+     */
+    public static void setEnabled(boolean enabled) {
+        MountainMetrics.enabled = enabled;
+    }
+
+    /**
+     * Records one BST operation.
+     * 
+     * @param operation the operation
+     * @param comparisons the number of element comparisons it made
+     * @param depth the number of levels it descended
+     */
+    static void recordOperation(Operation operation, int comparisons, int depth) {
+        COMPARISONS.get(operation).record(comparisons);
+        DEPTHS.get(operation).record(depth);
+    }
+
+    /**
+     * Records tree rotations.
+     * 
+     * @param count the number of rotations
+     */
+    static void recordRotations(int count) {
+        ROTATIONS.add(count);
+    }
+
+    /**
+     * Records the outcome of one search down the mountain.
+     * 
+     * @param visited the number of rest stops visited
+     * @param pruned the number of subtrees skipped without being visited
+     * @param pathsFound the number of successful paths found
+     */
+    static void recordSearch(long visited, long pruned, long pathsFound) {
+        NODES_VISITED.add(visited);
+        NODES_PRUNED.add(pruned);
+        PATHS_FOUND.add(pathsFound);
+    }
+
+    /**
+     * Records a path that failed at a rest stop.
+     * 
+     * @param rejection the reason the path failed
+     */
+    static void recordRejection(Rejection rejection) {
+        REJECTIONS.get(rejection).increment();
+    }
+
+    /**
+     * Records time spent in a phase without emitting a JFR event. This is used for
+     * phases that are interleaved with others, like parsing and building.
+     * 
+     * @param phase the phase
+     * @param nanos the time spent in nanoseconds
+     */
+    static void recordPhase(Phase phase, long nanos) {
+        PHASE_NANOS.get(phase).record(nanos);
+    }
+
+    /**
+     * Starts timing a phase. The returned timer records the phase and commits its JFR
+     * event when it is closed.
+     * 
+     * @param phase the phase
+     * @param subject what the phase works on, such as a file name
+     * @return the running timer
+     */
+    static PhaseTimer startPhase(Phase phase, String subject) {
+        return new PhaseTimer(phase, subject);
+    }
+
+    /**
+     * Clears all recorded metrics.
+     */
+    public static void reset() {
+        for (Histogram histogram : COMPARISONS.values()) {
+            histogram.reset();
+        }
+        for (Histogram histogram : DEPTHS.values()) {
+            histogram.reset();
+        }
+        for (LongAdder counter : REJECTIONS.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : PHASE_NANOS.values()) {
+            histogram.reset();
+        }
+        ROTATIONS.reset();
+        NODES_VISITED.reset();
+        NODES_PRUNED.reset();
+        PATHS_FOUND.reset();
+    }
+
+    /**
+     * Prints a summary of the recorded metrics.
+     * 
+     * @param out the stream to print to
+     */
+    public static void report(PrintStream out) {
+        out.println("BST operations (count, mean/p99/max comparisons, mean/p99/max depth):");
+        for (Operation operation : Operation.values()) {
+            Histogram comparisons = COMPARISONS.get(operation);
+            Histogram depths = DEPTHS.get(operation);
+            if (comparisons.count() > 0) {
+                out.printf("  %-12s %12d  %8.2f / %d / %-8d %8.2f / %d / %d%n", operation, comparisons.count(),
+                        comparisons.mean(), comparisons.percentile(0.99), comparisons.max(),
+                        depths.mean(), depths.percentile(0.99), depths.max());
+            }
+        }
+        out.println("Rotations: " + ROTATIONS.sum());
+        out.println("Explore: visited " + NODES_VISITED.sum() + ", pruned " + NODES_PRUNED.sum()
+                + ", paths found " + PATHS_FOUND.sum());
+        out.println("Rejections: " + REJECTIONS);
+        out.println("Phases (total ms, count, p50/p99/max ms):");
+        for (Phase phase : Phase.values()) {
+            Histogram histogram = PHASE_NANOS.get(phase);
+            if (phase == Phase.PARSE) {
+                // Parsing is interleaved with building, so it is what remains of loading
+                // and only its total is known.
+                long nanos = Math.max(0, PHASE_NANOS.get(Phase.LOAD).sum() - PHASE_NANOS.get(Phase.BUILD).sum());
+                if (nanos > 0) {
+                    out.printf("  %-12s %12.3f%n", phase, nanos / 1e6);
+                }
+            } else if (histogram.count() > 0) {
+                out.printf("  %-12s %12.3f  %8d  %.3f / %.3f / %.3f%n", phase, histogram.sum() / 1e6,
+                        histogram.count(), histogram.percentile(0.5) / 1e6, histogram.percentile(0.99) / 1e6,
+                        histogram.max() / 1e6);
+            }
+        }
+    }
+
+    /**
+     * Prints the shape of a tree next to the height a balanced tree of the same size would have.
+     * 
+     * @param out the stream to print to
+     * @param tree the tree
+     */
+    public static void reportShape(PrintStream out, BST<?> tree) {
+        int balancedHeight = 32 - Integer.numberOfLeadingZeros(tree.size());
+        out.println("Tree: size " + tree.size() + ", height " + tree.height()
+                + ", balanced height " + balancedHeight);
+    }
+
+    /**
+     * A histogram of non-negative values with one bucket per power of two.
+     * Updates from several threads do not contend on a single counter.
+     */
+    static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            buckets[63 - Long.numberOfLeadingZeros(value | 1)].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long sum() {
+            return sum.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count();
+            return (n == 0) ? 0 : (double) sum() / n;
+        }
+
+        /**
+         * Returns an upper bound for the given fraction of the recorded values: the top of
+         * the power of two bucket that value falls in, or the maximum if that is lower.
+         * Bucket i holds the values in [2^i, 2^(i+1)), with 0 counted in bucket 0.
+         * 
+         * @param fraction the fraction of values, between 0 and 1
+         * @return the bound, or 0 if nothing was recorded
+         */
+        long percentile(double fraction) {
+            long rank = (long) Math.ceil(fraction * count());
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= rank && seen > 0) {
+                    return (i == 63) ? max() : Math.min(max(), (1L << (i + 1)) - 1);
+                }
+            }
+            return max();
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            count.reset();
+            sum.reset();
+            max.reset();
+        }
+    }
+
+    /**
+     * Times one phase of a run and reports it as a JFR event.
+     */
+    static final class PhaseTimer implements AutoCloseable {
+        private final Phase phase;
+        private final long start;
+        private final PhaseEvent event;
+
+        private PhaseTimer(Phase phase, String subject) {
+            this.phase = phase;
+            this.start = System.nanoTime();
+            this.event = new PhaseEvent();
+            event.phase = phase.name();
+            event.subject = subject;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            if (enabled) {
+                recordPhase(phase, System.nanoTime() - start);
+            }
+            event.commit();
+        }
+    }
+
+    /**
+     * The JFR event for one phase of a mountain run.
+     */
+    @Name("project5.Phase")
+    @Label("Mountain Phase")
+    @Category("Mountain")
+    @Description("A phase of loading, exploring or reporting a mountain")
+    static final class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Subject")
+        String subject;
+    }
+}
@@ -0,0 +1,123 @@
+package project5;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A path down the mountain, stored as its last rest stop plus a link to the path
+ * leading up to it. Paths that share a beginning share the same parent links, so
+ * many paths through the same part of the mountain cost one link per rest stop
+ * instead of one full copy per path. The rest stops are only put in order when the
+ * path is iterated or printed.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public final class MountainPath implements Iterable<RestStop> {
+    private final MountainPath parent;
+    private final RestStop stop;
+    private final int length;
+
+    /**
+     * Constructs a path that continues the given path with one more rest stop.
+     * 
+     * @param parent the path leading up to the rest stop, or null if the rest stop is the first one
+     * @param stop the last rest stop of the path
+     */
+    public MountainPath(MountainPath parent, RestStop stop) {
+        this.parent = parent;
+        this.stop = stop;
+        this.length = (parent == null) ? 1 : parent.length + 1;
+    }
+
+    /**
+     * Returns the path leading up to the last rest stop.
+     * 
+     * @return the path without its last rest stop, or null if the path has a single rest stop
+     */
+    public MountainPath getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the last rest stop of the path.
+     * 
+     * @return the last rest stop of the path
+     */
+    public RestStop getLastStop() {
+        return stop;
+    }
+
+    /**
+     * Returns the number of rest stops on the path.
+     * 
+     * @return the number of rest stops on the path
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the rest stops of the path, from the top of the mountain down.
+     * 
+     * @return a new array holding the rest stops of the path
+     */
+    public RestStop[] toArray() {
+        RestStop[] stops = new RestStop[length];
+        MountainPath current = this;
+        for (int i = length - 1; i >= 0; i--) {
+            stops[i] = current.stop;
+            current = current.parent;
+        }
+        return stops;
+    }
+
+    /**
+     * Returns the rest stops of the path as a list, from the top of the mountain down.
+     * 
+     * @return a new list holding the rest stops of the path
+     */
+    public List<RestStop> toList() {
+        return new ArrayList<>(Arrays.asList(toArray()));
+    }
+
+    @Override
+    public Iterator<RestStop> iterator() {
+        return Arrays.asList(toArray()).iterator();
+    }
+
+    /**
+     * Writes the labels of the rest stops on the path, separated by spaces.
+     * 
+     * @param out where to write the labels
+     * @throws IOException if writing fails
+     */
+    public void appendTo(Appendable out) throws IOException {
+        RestStop[] stops = toArray();
+        for (int i = 0; i < stops.length; i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            out.append(stops[i].getLabel());
+        }
+    }
+
+    /**
+     * Returns the labels of the rest stops on the path, separated by spaces.
+     * 
+     * @return the labels of the rest stops on the path
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        try {
+            appendTo(sb);
+        } catch (IOException e) {
+            throw new AssertionError("StringBuilder does not throw IOException", e);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,371 @@
+package project5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A long-running server that loads mountains once and answers queries about them over a
+ * local socket, so queries do not pay for JVM startup and loading every time.
+ * <p>
+ * Clients send one command per line and get zero or more result lines back, each one
+ * prefixed with {@code "= "}, followed by {@code OK}. A command that fails ends with a
+ * single {@code ERROR <message>} line instead, after any result lines it already sent.
+ * The prefix keeps labels and paths from being taken for the end of a reply.
+ * The commands are:
+ * <ul>
+ * <li>{@code LIST} - the names of the loaded mountains</li>
+ * <li>{@code EXPLORE <mountain> [supply...]} - all successful paths</li>
+ * <li>{@code TOP <mountain> <k>} - the k paths with the most leftover supplies</li>
+ * <li>{@code FEASIBLE <mountain> [supply...]} - true and the first path, or false</li>
+ * <li>{@code CONTAINS <mountain> <label>} - true or false</li>
+ * <li>{@code RANGE <mountain> <from> <to>} - the labels between from and to, inclusive</li>
+ * <li>{@code RELOAD <mountain>} - reloads the mountain from its file</li>
+ * <li>{@code QUIT} - closes the connection</li>
+ * </ul>
+ * Starting supplies for EXPLORE and FEASIBLE are given one word each after the mountain
+ * name. Queries only read a mountain, so any number of them run at once.
+ * A reload builds a new mountain on the side and then swaps it in, so queries that are
+ * running keep the mountain they started with.
+ * <p>
+ * Every connection gets its own thread. On a JDK with virtual threads those are virtual
+ * threads; otherwise they come from a cached pool of platform threads.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class MountainServer implements AutoCloseable {
+    private final Map<String, File> files = new ConcurrentHashMap<>();
+    private final Map<String, BSTMountain> mountains = new ConcurrentHashMap<>();
+    private final ExecutorService connections = newConnectionExecutor();
+    private final Set<Socket> openSockets = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+
+    /**
+     * Loads a mountain from a file under the given name and the default rules, replacing
+     * any mountain that was loaded under that name before.
+     * 
+     * @param name the name clients use for the mountain
+     * @param file the mountain file
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public void load(String name, File file) throws FileNotFoundException {
+        load(name, file, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Loads a mountain from a file under the given name and rules, replacing any mountain
+     * that was loaded under that name before.
+     * 
+     * @param name the name clients use for the mountain
+     * @param file the mountain file
+     * @param rules the rules the mountain is loaded and queried under
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public void load(String name, File file, SurvivalRules rules) throws FileNotFoundException {
+        BSTMountain mountain = new BSTMountain(rules);
+        MountainClimb.loadMountainFromFile(mountain, file);
+        files.put(name, file);
+        mountains.put(name, mountain);
+    }
+
+    /**
+     * Reloads a mountain from the file it was loaded from, under the rules it was loaded
+     * with.
+     * 
+     * @param name the name of the mountain
+     * @throws FileNotFoundException if the file no longer exists
+     * @throws IllegalArgumentException if no mountain has that name
+     */
+    public void reload(String name) throws FileNotFoundException {
+        File file = files.get(name);
+        if (file == null) {
+            throw new IllegalArgumentException("Unknown mountain: " + name);
+        }
+        load(name, file, mountain(name).getRules());
+    }
+
+    /**
+     * Starts accepting connections on the loopback address.
+     * 
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be opened
+     */
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        new Thread(this::acceptConnections, "mountain-server-accept").start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * 
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the ones that are open. Closing a socket is
+     * what stops a connection that is waiting for its next command, since a thread
+     * blocked reading a socket does not notice being interrupted.
+     * 
+     * @throws IOException if the server socket cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        connections.shutdownNow();
+        for (Socket socket : openSockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The connection is going away either way.
+            }
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                openSockets.add(socket);
+                try {
+                    connections.execute(() -> serve(socket));
+                } catch (RejectedExecutionException e) {
+                    // close() ran after the socket was accepted and may have missed it.
+                    openSockets.remove(socket);
+                    socket.close();
+                    return;
+                }
+            } catch (SocketException e) {
+                return; // The server socket was closed.
+            } catch (IOException e) {
+                System.err.println("Error accepting a connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Answers the commands sent over one connection until the client quits or disconnects.
+     * 
+     * @param socket the client connection
+     */
+    private void serve(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.trim().split("\\s+");
+                if (words[0].equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                try {
+                    execute(words, out);
+                    out.write("OK\n");
+                } catch (RuntimeException | FileNotFoundException e) {
+                    writeError(out, e);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away; there is nobody left to report to.
+        } finally {
+            openSockets.remove(socket);
+        }
+    }
+
+    /**
+     * Executes one command and writes its result lines.
+     * 
+     * @param words the command and its arguments
+     * @param out the writer for the result lines
+     * @throws IOException if writing fails
+     * @throws IllegalArgumentException if the command is not valid
+     */
+    private void execute(String[] words, Writer out) throws IOException {
+        String command = words[0].toUpperCase();
+        switch (command) {
+            case "LIST":
+                expectArguments(words, 1, 1);
+                for (String name : new TreeMap<>(mountains).keySet()) {
+                    writeResult(out, name);
+                }
+                break;
+            case "EXPLORE":
+                expectArguments(words, 2, Integer.MAX_VALUE);
+                for (MountainPath path : mountain(words[1]).findSuccessfulPaths(supplies(words))) {
+                    writeResult(out, path);
+                }
+                break;
+            case "TOP":
+                expectArguments(words, 3, 3);
+                for (MountainPath path : mountain(words[1]).findTopPaths(parseCount(words[2]))) {
+                    writeResult(out, path);
+                }
+                break;
+            case "FEASIBLE":
+                expectArguments(words, 2, Integer.MAX_VALUE);
+                MountainPath path = mountain(words[1]).findFirstPath(supplies(words));
+                writeResult(out, path != null);
+                if (path != null) {
+                    writeResult(out, path);
+                }
+                break;
+            case "CONTAINS":
+                expectArguments(words, 3, 3);
+                BSTMountain mountain = mountain(words[1]);
+                writeResult(out, mountain.contains(new RestStop(words[2], mountain.getRules())));
+                break;
+            case "RANGE":
+                expectArguments(words, 4, 4);
+                mountain = mountain(words[1]);
+                SurvivalRules rules = mountain.getRules();
+                for (RestStop stop : mountain.range(new RestStop(words[2], rules), new RestStop(words[3], rules))) {
+                    writeResult(out, stop.getLabel());
+                }
+                break;
+            case "RELOAD":
+                expectArguments(words, 2, 2);
+                reload(words[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + words[0]);
+        }
+    }
+
+    /**
+     * Writes one result line with the prefix that sets it apart from OK and ERROR.
+     * 
+     * @param out the writer for the result lines
+     * @param result the result
+     * @throws IOException if writing fails
+     */
+    private static void writeResult(Writer out, Object result) throws IOException {
+        out.write("= " + result + "\n");
+    }
+
+    /**
+     * Writes the ERROR line for a failed command. Exceptions other than the expected
+     * IllegalArgumentException are reported by class name as well, since their message
+     * alone may not say much.
+     * 
+     * @param out the writer for the result lines
+     * @param e the exception the command failed with
+     * @throws IOException if writing fails
+     */
+    private static void writeError(Writer out, Exception e) throws IOException {
+        String message = (e instanceof IllegalArgumentException || e instanceof FileNotFoundException)
+                ? e.getMessage() : e.toString();
+        out.write("ERROR " + String.valueOf(message).replace('\n', ' ').replace('\r', ' ') + "\n");
+    }
+
+    private BSTMountain mountain(String name) {
+        BSTMountain mountain = mountains.get(name);
+        if (mountain == null) {
+            throw new IllegalArgumentException("Unknown mountain: " + name);
+        }
+        return mountain;
+    }
+
+    private static List<String> supplies(String[] words) {
+        return new ArrayList<>(Arrays.asList(words).subList(2, words.length));
+    }
+
+    private static int parseCount(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + word);
+        }
+    }
+
+    private static void expectArguments(String[] words, int min, int max) {
+        if (words.length < min || words.length > max) {
+            throw new IllegalArgumentException("Wrong number of arguments for " + words[0]);
+        }
+    }
+
+    /**
+     * Creates the executor that runs connections, using a virtual thread per connection
+     * when the JDK supports it.
+     * 
+     * @return the executor for connections
+     */
+    static ExecutorService newConnectionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "mountain-server-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Main method to run the server.
+     * 
+     * @param args the port followed by one or more {@code <name>=<inputFileName>} mountains;
+     *             {@code --rules <file>} before a mountain loads the SurvivalRules for it
+     *             and the mountains after it from a properties file
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java MountainServer <port> [--rules <file>] <name>=<inputFileName>...");
+            System.exit(1);
+        }
+
+        MountainServer server = new MountainServer();
+        try {
+            SurvivalRules rules = SurvivalRules.DEFAULT;
+            int loaded = 0;
+            for (int i = 1; i < args.length; i++) {
+                if (args[i].equals("--rules") && i + 1 < args.length) {
+                    rules = SurvivalRules.load(new File(args[++i]));
+                    continue;
+                }
+                int split = args[i].indexOf('=');
+                if (split <= 0) {
+                    throw new IllegalArgumentException("Expected <name>=<inputFileName>: " + args[i]);
+                }
+                server.load(args[i].substring(0, split), new File(args[i].substring(split + 1)), rules);
+                loaded++;
+            }
+            if (loaded == 0) {
+                throw new IllegalArgumentException("No mountains given");
+            }
+            server.start(Integer.parseInt(args[0]));
+            System.out.println("Listening on port " + server.getPort());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
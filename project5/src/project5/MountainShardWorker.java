@@ -0,0 +1,198 @@
+package project5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * A worker process of a ShardedMountain. It holds some of the subtrees that hang below
+ * the top of the mountain, each one as its own BSTMountain, and answers the
+ * coordinator's commands on standard input and output.
+ * <p>
+ * Commands are one per line. Every command except ADD gets zero or more result lines
+ * back, each one prefixed with {@code "= "}, followed by {@code OK}. A command that fails
+ * ends with a single {@code ERROR <message>} line instead, after any result lines it
+ * already sent. The commands are:
+ * <ul>
+ * <li>{@code RULES} - followed by the SurvivalRules in their properties format and a line
+ * {@code END}; must come before the first ADD</li>
+ * <li>{@code ADD <subtree> <line>} - adds a rest stop, given as a line of the mountain
+ * file, to a subtree; has no reply</li>
+ * <li>{@code LOADED} - replies with the first error from the ADD commands, if any</li>
+ * <li>{@code HEIGHTS} - {@code <subtree> <height>} for every subtree</li>
+ * <li>{@code SIZE} - the number of rest stops in all subtrees</li>
+ * <li>{@code CONTAINS <subtree> <label>} - true or false</li>
+ * <li>{@code RANGE <from> <to>} - the labels between from and to, inclusive, in order</li>
+ * <li>{@code COUNT <from> <to>} - the number of rest stops between from and to, inclusive</li>
+ * <li>{@code EXPLORE <subtree> <leafDepth> <supply count>...} - the successful paths from
+ * the root of a subtree, for a hiker arriving with the given supply counts, written as
+ * they are found</li>
+ * <li>{@code QUIT} - ends the process</li>
+ * </ul>
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public final class MountainShardWorker {
+    private SurvivalRules rules = SurvivalRules.DEFAULT;
+    private final Map<Integer, BSTMountain> subtrees = new TreeMap<>();
+    private String loadError;
+
+    private MountainShardWorker() {
+    }
+
+    /**
+     * Main method of a worker process.
+     * 
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        try {
+            new MountainShardWorker().serve(
+                    new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16),
+                    new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+        } catch (IOException e) {
+            System.err.println("Worker error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] words = line.split(" ", 3);
+            if (words[0].equals("QUIT")) {
+                return;
+            }
+            if (words[0].equals("ADD")) {
+                add(words);
+                continue;
+            }
+            try {
+                execute(words, in, out);
+                out.write("OK\n");
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                String message = (e instanceof IllegalArgumentException) ? e.getMessage() : e.toString();
+                out.write("ERROR " + String.valueOf(message).replace('\n', ' ').replace('\r', ' ') + "\n");
+            }
+            out.flush();
+        }
+    }
+
+    private void add(String[] words) {
+        try {
+            int subtree = Integer.parseInt(words[1]);
+            RestStop stop = MountainClimb.parseRestStop(words[2], rules);
+            subtrees.computeIfAbsent(subtree, key -> new BSTMountain(rules)).add(stop);
+        } catch (RuntimeException e) {
+            if (loadError == null) {
+                loadError = "Cannot add '" + String.join(" ", words) + "': " + e;
+            }
+        }
+    }
+
+    private void execute(String[] words, BufferedReader in, Writer out) throws IOException {
+        switch (words[0]) {
+            case "RULES":
+                StringBuilder text = new StringBuilder();
+                String line;
+                while ((line = in.readLine()) != null && !line.equals("END")) {
+                    text.append(line).append('\n');
+                }
+                Properties properties = new Properties();
+                properties.load(new StringReader(text.toString()));
+                rules = SurvivalRules.fromProperties(properties);
+                break;
+            case "LOADED":
+                if (loadError != null) {
+                    throw new IllegalArgumentException(loadError);
+                }
+                break;
+            case "HEIGHTS":
+                for (Map.Entry<Integer, BSTMountain> entry : subtrees.entrySet()) {
+                    writeResult(out, entry.getKey() + " " + entry.getValue().height());
+                }
+                break;
+            case "SIZE":
+                long size = 0;
+                for (BSTMountain subtree : subtrees.values()) {
+                    size += subtree.size();
+                }
+                writeResult(out, Long.toString(size));
+                break;
+            case "CONTAINS":
+                BSTMountain mountain = subtrees.get(Integer.parseInt(words[1]));
+                writeResult(out, Boolean.toString(mountain != null && mountain.contains(new RestStop(words[2], rules))));
+                break;
+            case "RANGE":
+            case "COUNT":
+                if (words.length != 3 || words[2].contains(" ")) {
+                    throw new IllegalArgumentException("Expected two labels");
+                }
+                RestStop from = new RestStop(words[1], rules);
+                RestStop to = new RestStop(words[2], rules);
+                long count = 0;
+                for (BSTMountain subtree : subtrees.values()) {
+                    for (RestStop stop : subtree.range(from, to)) {
+                        if (words[0].equals("RANGE")) {
+                            writeResult(out, stop.getLabel());
+                        }
+                        count++;
+                    }
+                }
+                if (words[0].equals("COUNT")) {
+                    writeResult(out, Long.toString(count));
+                }
+                break;
+            case "EXPLORE":
+                explore(words, out);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + words[0]);
+        }
+    }
+
+    private void explore(String[] words, Writer out) throws IOException {
+        String[] arguments = words[2].split(" ");
+        BSTMountain subtree = subtrees.get(Integer.parseInt(words[1]));
+        int leafDepth = Integer.parseInt(arguments[0]);
+        if (arguments.length != rules.supplyKinds() + 1) {
+            throw new IllegalArgumentException("Expected " + rules.supplyKinds() + " supply counts");
+        }
+        int[] supplies = new int[rules.supplyKinds()];
+        for (int i = 0; i < supplies.length; i++) {
+            supplies[i] = Integer.parseInt(arguments[i + 1]);
+        }
+        if (subtree == null) {
+            return;
+        }
+        // The output is buffered, so paths go out a buffer at a time while the search
+        // goes on, and the search waits whenever the coordinator falls behind.
+        subtree.findSuccessfulPaths(supplies, leafDepth, path -> {
+            try {
+                out.write("= ");
+                path.appendTo(out);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static void writeResult(Writer out, String result) throws IOException {
+        out.write("= ");
+        out.write(result);
+        out.write('\n');
+    }
+}
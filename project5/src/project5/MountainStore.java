@@ -0,0 +1,946 @@
+package project5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+
+/**
+ * A mountain kept in a file instead of on the heap, for mountains too large to load into
+ * a BSTMountain. The rest stops are stored in a B+tree of fixed-size pages, ordered by
+ * label, and every rest stop records the labels of its left and right child on the
+ * mountain. Lookups and ordered scans go through the B+tree; exploring follows the child
+ * labels from the root down, exactly as BSTMountain does with its nodes.
+ * <p>
+ * The file is read and written a page at a time with positional reads and writes, and
+ * the pages are cached on the heap. Lookups jump between pages all over the file, so
+ * reading single pages wastes the least I/O on a miss. Only a bounded number of pages
+ * are cached; the least recently used ones are written back if they changed and dropped
+ * between steps of an operation, never while they are in use. The heap only holds the
+ * cached pages and the current path, so the size of the mountain is limited by the disk,
+ * not by the heap.
+ * <p>
+ * Labels are limited to {@value #MAX_LABEL_LENGTH} characters, and the SurvivalRules a
+ * store is built with to {@value #MAX_ITEM_KINDS} supply and obstacle kinds together.
+ * The rules are kept in the header page, so a store is always explored under the rules
+ * it was built with. A store is not safe for use by several threads at once.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class MountainStore implements Closeable, Iterable<RestStop> {
+    /** The size of a page in bytes. */
+    public static final int PAGE_SIZE = 4096;
+    /** The longest label that can be stored. */
+    public static final int MAX_LABEL_LENGTH = 31;
+    /** The most supply and obstacle kinds, together, that a record has counts for. */
+    public static final int MAX_ITEM_KINDS = 8;
+
+    /**
+     * The fewest pages kept in the cache. Splitting a page works on two pages at once and
+     * their parent, so a smaller cache would read the same pages over and over.
+     */
+    private static final int MIN_CACHE_PAGES = 4;
+    private static final int MAGIC = 0x4D544E32;
+
+    /** A label is stored as its length followed by its characters. An empty key means none. */
+    private static final int KEY_BYTES = 2 + 2 * MAX_LABEL_LENGTH;
+
+    // The header page.
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_PAGE_COUNT = 4;
+    private static final int HEADER_TREE_ROOT = 8;
+    private static final int HEADER_TREE_HEIGHT = 12;
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_MOUNTAIN_HEIGHT = 24;
+    private static final int HEADER_MOUNTAIN_ROOT = 28;
+    /** The rules in their properties format, as a length followed by UTF-8 bytes. */
+    private static final int HEADER_RULES = HEADER_MOUNTAIN_ROOT + KEY_BYTES;
+
+    // Every other page starts with its type, its number of entries and, for leaves,
+    // the next leaf in label order.
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int PAGE_TYPE = 0;
+    private static final int PAGE_COUNT = 2;
+    private static final int PAGE_NEXT = 4;
+    private static final int PAGE_HEADER = 8;
+
+    // A leaf record: the label, the item counts and the labels of the mountain children.
+    // The counts are one int per supply kind followed by one int per obstacle kind.
+    private static final int RECORD_ITEMS = KEY_BYTES;
+    private static final int RECORD_LEFT = RECORD_ITEMS + 4 * MAX_ITEM_KINDS;
+    private static final int RECORD_RIGHT = RECORD_LEFT + KEY_BYTES;
+    private static final int RECORD_BYTES = RECORD_RIGHT + KEY_BYTES;
+
+    private static final int LEAF_CAPACITY = (PAGE_SIZE - PAGE_HEADER) / RECORD_BYTES;
+    // An internal page holds count + 1 child page numbers followed by count separator keys.
+    private static final int INTERNAL_CAPACITY = (PAGE_SIZE - PAGE_HEADER - 4) / (KEY_BYTES + 4);
+    private static final int INTERNAL_KEYS = PAGE_HEADER + 4 * (INTERNAL_CAPACITY + 1);
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    /** The cached pages by page number, least recently used first. */
+    private final Map<Integer, CachedPage> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final int cachePages;
+    private final byte[] scratch = new byte[2 * PAGE_SIZE];
+    private long pageMisses = 0;
+    private SurvivalRules rules;
+
+    private int pageCount;
+    private int treeRoot;
+    private int treeHeight;
+    private long size;
+    private int mountainHeight;
+    private String mountainRoot;
+
+    /**
+     * Opens a store, creating an empty one under the default rules if the file does not
+     * exist or is empty.
+     * 
+     * @param path the store file
+     * @param cachePages the number of pages to keep cached, at least
+     *                   {@value #MIN_CACHE_PAGES}
+     * @throws IOException if the file cannot be opened or is not a mountain store
+     */
+    public MountainStore(File path, int cachePages) throws IOException {
+        this(path, cachePages, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Opens a store, creating an empty one under the given rules if the file does not
+     * exist or is empty. An existing store keeps the rules it was created with.
+     * 
+     * @param path the store file
+     * @param cachePages the number of pages to keep cached, at least
+     *                   {@value #MIN_CACHE_PAGES}
+     * @param rules the rules for a new store
+     * @throws IOException if the file cannot be opened or is not a mountain store
+     * @throws IllegalArgumentException if the rules have more than
+     *         {@value #MAX_ITEM_KINDS} supply and obstacle kinds
+     */
+    public MountainStore(File path, int cachePages, SurvivalRules rules) throws IOException {
+        if (rules.supplyKinds() + rules.obstacleKinds() > MAX_ITEM_KINDS) {
+            throw new IllegalArgumentException("A store holds at most " + MAX_ITEM_KINDS + " supply and obstacle kinds");
+        }
+        this.cachePages = Math.max(MIN_CACHE_PAGES, cachePages);
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        try {
+            if (channel.size() == 0) {
+                this.rules = rules;
+                pageCount = 1;
+                treeRoot = allocatePage(LEAF);
+                treeHeight = 1;
+                writeHeader();
+            } else {
+                readHeader(path);
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void readHeader(File path) throws IOException {
+        if (channel.size() < PAGE_SIZE) {
+            throw new IOException("Not a mountain store: " + path);
+        }
+        ByteBuffer header = readPage(0);
+        if (header.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new IOException("Not a mountain store: " + path);
+        }
+        pageCount = header.getInt(HEADER_PAGE_COUNT);
+        treeRoot = header.getInt(HEADER_TREE_ROOT);
+        treeHeight = header.getInt(HEADER_TREE_HEIGHT);
+        size = header.getLong(HEADER_SIZE);
+        mountainHeight = header.getInt(HEADER_MOUNTAIN_HEIGHT);
+        mountainRoot = readKey(header, HEADER_MOUNTAIN_ROOT);
+        byte[] text = new byte[header.getShort(HEADER_RULES)];
+        header.get(HEADER_RULES + 2, text);
+        Properties properties = new Properties();
+        properties.load(new StringReader(new String(text, StandardCharsets.UTF_8)));
+        rules = SurvivalRules.fromProperties(properties);
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = writablePage(0);
+        header.putInt(HEADER_MAGIC, MAGIC);
+        header.putInt(HEADER_PAGE_COUNT, pageCount);
+        header.putInt(HEADER_TREE_ROOT, treeRoot);
+        header.putInt(HEADER_TREE_HEIGHT, treeHeight);
+        header.putLong(HEADER_SIZE, size);
+        header.putInt(HEADER_MOUNTAIN_HEIGHT, mountainHeight);
+        writeKey(header, HEADER_MOUNTAIN_ROOT, mountainRoot);
+        byte[] text = rules.toString().getBytes(StandardCharsets.UTF_8);
+        if (HEADER_RULES + 2 + text.length > PAGE_SIZE) {
+            throw new IllegalArgumentException("The rules do not fit in the header page");
+        }
+        header.putShort(HEADER_RULES, (short) text.length);
+        header.put(HEADER_RULES + 2, text);
+    }
+
+    /**
+     * Returns the rules the store was built with.
+     * 
+     * @return the rules
+     */
+    public SurvivalRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the number of rest stops in the store.
+     * 
+     * @return the number of rest stops
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the height of the mountain, the number of rest stops on its longest path.
+     * 
+     * @return the height of the mountain
+     */
+    public int height() {
+        return mountainHeight;
+    }
+
+    /**
+     * Returns how many times a page had to be read because it was not in the cache.
+     * 
+     * @return the number of page cache misses
+     */
+    public long getPageMisses() {
+        return pageMisses;
+    }
+
+    /**
+     * Adds a rest stop to the mountain, below the rest stops that were added before it,
+     * as BSTMountain.add does.
+     * 
+     * @param stop the rest stop to add
+     * @return true if the rest stop was added, false if its label was already present
+     * @throws IOException if the store cannot be read or written
+     * @throws IllegalArgumentException if the label is empty or too long, or if the rest
+     *         stop was built with other rules than the store
+     */
+    public boolean add(RestStop stop) throws IOException {
+        String label = stop.getLabel();
+        if (label.isEmpty() || label.length() > MAX_LABEL_LENGTH) {
+            throw new IllegalArgumentException("Labels must have 1 to " + MAX_LABEL_LENGTH + " characters: " + label);
+        }
+        if (!stop.getRules().equals(rules)) {
+            throw new IllegalArgumentException("Rest stop " + label + " was built with other rules than the store");
+        }
+        if (mountainRoot == null) {
+            insertRecord(label, encode(stop));
+            mountainRoot = label;
+            mountainHeight = 1;
+            size++;
+            return true;
+        }
+
+        String current = mountainRoot;
+        int depth = 1;
+        while (true) {
+            trimCache();
+            int cmp = label.compareTo(current);
+            if (cmp == 0) {
+                return false;
+            }
+            int child = (cmp < 0) ? RECORD_LEFT : RECORD_RIGHT;
+            long location = locate(current);
+            ByteBuffer page = readPage(pageOf(location));
+            int at = recordOffset(location) + child;
+            if (page.getShort(at) == 0) {
+                insertRecord(label, encode(stop));
+                // Inserting may have moved the parent's record to another page.
+                location = locate(current);
+                writeKey(writablePage(pageOf(location)), recordOffset(location) + child, label);
+                size++;
+                mountainHeight = Math.max(mountainHeight, depth + 1);
+                return true;
+            }
+            current = readKey(page, at);
+            depth++;
+        }
+    }
+
+    /**
+     * Returns the rest stop with the given label.
+     * 
+     * @param label the label to look up
+     * @return the rest stop, or null if there is none with that label
+     * @throws IOException if the store cannot be read
+     */
+    public RestStop get(String label) throws IOException {
+        trimCache();
+        long location = locate(label);
+        return (location < 0) ? null : decode(readPage(pageOf(location)), recordOffset(location));
+    }
+
+    /**
+     * Checks if the store holds a rest stop with the given label.
+     * 
+     * @param label the label to look up
+     * @return true if the label is present
+     * @throws IOException if the store cannot be read
+     */
+    public boolean contains(String label) throws IOException {
+        trimCache();
+        return locate(label) >= 0;
+    }
+
+    /**
+     * Returns the rest stops with labels between two bounds, both inclusive, in label order.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the rest stops in the range
+     * @throws IOException if the store cannot be read
+     */
+    public List<RestStop> range(String from, String to) throws IOException {
+        List<RestStop> stops = new ArrayList<>();
+        StoreIterator it = new StoreIterator(from);
+        while (it.hasNext()) {
+            RestStop stop = it.next();
+            if (to.compareTo(stop.getLabel()) < 0) {
+                break;
+            }
+            stops.add(stop);
+        }
+        return stops;
+    }
+
+    /**
+     * Returns an iterator over all rest stops in label order. Read errors are thrown as
+     * UncheckedIOException.
+     * 
+     * @return an iterator over the rest stops
+     */
+    @Override
+    public Iterator<RestStop> iterator() {
+        try {
+            return new StoreIterator(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Explores every path from the root to the leaves, as BSTMountain.explore does, and
+     * writes each successful path as one line of labels. Only the current path and the
+     * children still to visit are kept on the heap.
+     * 
+     * @param out where to write the successful paths
+     * @return the number of successful paths
+     * @throws IOException if the store cannot be read or the output cannot be written
+     */
+    public long explore(Appendable out) throws IOException {
+        if (mountainRoot == null) {
+            return 0;
+        }
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.EXPLORE, null);
+        try {
+            return explore(out, mountainHeight - 1);
+        } finally {
+            timer.close();
+        }
+    }
+
+    private long explore(Appendable out, int maxDepth) throws IOException {
+        String[] path = new String[mountainHeight];
+        // Every stop pushes at most two children, so one pending child per level is left.
+        int capacity = mountainHeight + 1;
+        String[] labels = new String[capacity];
+        int[] depths = new int[capacity];
+        int supplyKinds = rules.supplyKinds();
+        int[][] carried = new int[capacity][supplyKinds];
+        int[] supplies = new int[supplyKinds];
+        int[] collected = new int[supplyKinds];
+        int[] found = new int[rules.obstacleKinds()];
+        int top = 0;
+        labels[top++] = mountainRoot;
+        long visited = 0;
+        long paths = 0;
+
+        while (top > 0) {
+            trimCache();
+            top--;
+            String label = labels[top];
+            labels[top] = null;
+            int depth = depths[top];
+            long location = locate(label);
+            ByteBuffer page = readPage(pageOf(location));
+            int at = recordOffset(location);
+            visited++;
+            path[depth] = label;
+
+            System.arraycopy(carried[top], 0, supplies, 0, supplyKinds);
+            for (int i = 0; i < supplyKinds; i++) {
+                collected[i] = page.getInt(at + RECORD_ITEMS + 4 * i);
+            }
+            for (int i = 0; i < found.length; i++) {
+                found[i] = page.getInt(at + RECORD_ITEMS + 4 * (supplyKinds + i));
+            }
+            String left = readKey(page, at + RECORD_LEFT);
+            String right = readKey(page, at + RECORD_RIGHT);
+            boolean isLeaf = (left == null && right == null);
+
+            int shortage = rules.arrive(supplies, collected, found, isLeaf);
+            if (shortage != SurvivalRules.SURVIVED) {
+                reject(rules.rejection(shortage));
+                continue;
+            }
+
+            if (isLeaf) {
+                if (depth == maxDepth) {
+                    for (int i = 0; i <= depth; i++) {
+                        if (i > 0) {
+                            out.append(' ');
+                        }
+                        out.append(path[i]);
+                    }
+                    out.append('\n');
+                    paths++;
+                }
+                continue;
+            }
+            // Push right before left, so that paths come out in label order.
+            for (String child : new String[] {right, left}) {
+                if (child != null) {
+                    labels[top] = child;
+                    depths[top] = depth + 1;
+                    System.arraycopy(supplies, 0, carried[top], 0, supplyKinds);
+                    top++;
+                }
+            }
+        }
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordSearch(visited, 0, paths);
+        }
+        return paths;
+    }
+
+    private static void reject(MountainMetrics.Rejection rejection) {
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.recordRejection(rejection);
+        }
+    }
+
+    /**
+     * Writes the header and every changed page out to the file and forces them to disk.
+     * 
+     * @throws IOException if the store cannot be written
+     */
+    public void flush() throws IOException {
+        writeHeader();
+        for (Map.Entry<Integer, CachedPage> entry : cache.entrySet()) {
+            writeBack(entry.getKey(), entry.getValue());
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Flushes and closes the store.
+     * 
+     * @throws IOException if the store cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            cache.clear();
+            file.close();
+        }
+    }
+
+    // ---------------------------------------------------------------------------------
+    // The B+tree
+
+    /**
+     * Finds the record with the given label.
+     * 
+     * @param label the label to find
+     * @return the page of the record in the upper bits and its slot in the lower 16 bits,
+     *         or -1 if there is no record with that label
+     */
+    private long locate(String label) throws IOException {
+        int page = treeRoot;
+        for (int level = 1; level < treeHeight; level++) {
+            page = readPage(page).getInt(PAGE_HEADER + 4 * childIndex(page, label));
+        }
+        int slot = leafIndex(page, label);
+        return (slot < 0) ? -1 : ((long) page << 16) | slot;
+    }
+
+    private static int pageOf(long location) {
+        return (int) (location >>> 16);
+    }
+
+    private static int recordOffset(long location) {
+        return PAGE_HEADER + (int) (location & 0xFFFF) * RECORD_BYTES;
+    }
+
+    /**
+     * Returns the index of the child of an internal page whose subtree holds the label:
+     * the number of separator keys that are less than or equal to it.
+     */
+    private int childIndex(int page, String label) throws IOException {
+        ByteBuffer buffer = readPage(page);
+        int low = 0;
+        int high = buffer.getShort(PAGE_COUNT) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compareKey(label, buffer, INTERNAL_KEYS + mid * KEY_BYTES) >= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Searches a leaf for a label.
+     * 
+     * @return the slot of the label, or (-(insertion point) - 1) if it is not in the leaf
+     */
+    private int leafIndex(int page, String label) throws IOException {
+        ByteBuffer buffer = readPage(page);
+        int low = 0;
+        int high = buffer.getShort(PAGE_COUNT) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareKey(label, buffer, PAGE_HEADER + mid * RECORD_BYTES);
+            if (cmp > 0) {
+                low = mid + 1;
+            } else if (cmp < 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Inserts a record whose label is not in the tree yet, splitting full pages from the
+     * leaf up.
+     */
+    private void insertRecord(String label, byte[] record) throws IOException {
+        int[] pages = new int[treeHeight];
+        int[] positions = new int[treeHeight];
+        int page = treeRoot;
+        for (int level = 0; level < treeHeight - 1; level++) {
+            pages[level] = page;
+            positions[level] = childIndex(page, label);
+            page = readPage(page).getInt(PAGE_HEADER + 4 * positions[level]);
+        }
+        int slot = -leafIndex(page, label) - 1;
+
+        ByteBuffer buffer = writablePage(page);
+        int count = buffer.getShort(PAGE_COUNT);
+        int records = PAGE_HEADER;
+        if (count < LEAF_CAPACITY) {
+            int tail = (count - slot) * RECORD_BYTES;
+            buffer.get(records + slot * RECORD_BYTES, scratch, 0, tail);
+            buffer.put(records + (slot + 1) * RECORD_BYTES, scratch, 0, tail);
+            buffer.put(records + slot * RECORD_BYTES, record, 0, RECORD_BYTES);
+            buffer.putShort(PAGE_COUNT, (short) (count + 1));
+            return;
+        }
+
+        // Split the full leaf: gather its records with the new one, then share them out.
+        buffer.get(records, scratch, 0, slot * RECORD_BYTES);
+        System.arraycopy(record, 0, scratch, slot * RECORD_BYTES, RECORD_BYTES);
+        buffer.get(records + slot * RECORD_BYTES, scratch, (slot + 1) * RECORD_BYTES, (count - slot) * RECORD_BYTES);
+        int total = count + 1;
+        int leftCount = total / 2;
+        int rightPage = allocatePage(LEAF);
+        buffer = writablePage(page);
+        ByteBuffer rightBuffer = writablePage(rightPage);
+        buffer.put(records, scratch, 0, leftCount * RECORD_BYTES);
+        rightBuffer.put(PAGE_HEADER, scratch, leftCount * RECORD_BYTES, (total - leftCount) * RECORD_BYTES);
+        buffer.putShort(PAGE_COUNT, (short) leftCount);
+        rightBuffer.putShort(PAGE_COUNT, (short) (total - leftCount));
+        rightBuffer.putInt(PAGE_NEXT, buffer.getInt(PAGE_NEXT));
+        buffer.putInt(PAGE_NEXT, rightPage);
+
+        byte[] separator = new byte[KEY_BYTES];
+        System.arraycopy(scratch, leftCount * RECORD_BYTES, separator, 0, KEY_BYTES);
+        insertSeparator(pages, positions, treeHeight - 2, separator, rightPage);
+    }
+
+    /**
+     * Inserts a separator key and the page to its right into an internal page, splitting
+     * it and continuing upwards while pages are full. A new root is added when the root
+     * is split.
+     */
+    private void insertSeparator(int[] pages, int[] positions, int level, byte[] key, int rightPage) throws IOException {
+        while (level >= 0) {
+            int page = pages[level];
+            int position = positions[level];
+            ByteBuffer buffer = writablePage(page);
+            int count = buffer.getShort(PAGE_COUNT);
+            if (count < INTERNAL_CAPACITY) {
+                int tail = (count - position) * KEY_BYTES;
+                buffer.get(INTERNAL_KEYS + position * KEY_BYTES, scratch, 0, tail);
+                buffer.put(INTERNAL_KEYS + (position + 1) * KEY_BYTES, scratch, 0, tail);
+                buffer.put(INTERNAL_KEYS + position * KEY_BYTES, key, 0, KEY_BYTES);
+                for (int i = count; i > position; i--) {
+                    buffer.putInt(PAGE_HEADER + 4 * (i + 1), buffer.getInt(PAGE_HEADER + 4 * i));
+                }
+                buffer.putInt(PAGE_HEADER + 4 * (position + 1), rightPage);
+                buffer.putShort(PAGE_COUNT, (short) (count + 1));
+                return;
+            }
+
+            // Split the full page around its middle key, which moves up a level.
+            int total = count + 1;
+            int[] children = new int[total + 1];
+            for (int i = 0, j = 0; i <= count; i++, j++) {
+                children[j] = buffer.getInt(PAGE_HEADER + 4 * i);
+                if (i == position) {
+                    children[++j] = rightPage;
+                }
+            }
+            buffer.get(INTERNAL_KEYS, scratch, 0, position * KEY_BYTES);
+            System.arraycopy(key, 0, scratch, position * KEY_BYTES, KEY_BYTES);
+            buffer.get(INTERNAL_KEYS + position * KEY_BYTES, scratch, (position + 1) * KEY_BYTES,
+                    (count - position) * KEY_BYTES);
+
+            int middle = total / 2;
+            int newPage = allocatePage(INTERNAL);
+            buffer = writablePage(page);
+            ByteBuffer newBuffer = writablePage(newPage);
+            buffer.put(INTERNAL_KEYS, scratch, 0, middle * KEY_BYTES);
+            for (int i = 0; i <= middle; i++) {
+                buffer.putInt(PAGE_HEADER + 4 * i, children[i]);
+            }
+            buffer.putShort(PAGE_COUNT, (short) middle);
+            int rightCount = total - middle - 1;
+            newBuffer.put(INTERNAL_KEYS, scratch, (middle + 1) * KEY_BYTES, rightCount * KEY_BYTES);
+            for (int i = 0; i <= rightCount; i++) {
+                newBuffer.putInt(PAGE_HEADER + 4 * i, children[middle + 1 + i]);
+            }
+            newBuffer.putShort(PAGE_COUNT, (short) rightCount);
+
+            key = new byte[KEY_BYTES];
+            System.arraycopy(scratch, middle * KEY_BYTES, key, 0, KEY_BYTES);
+            rightPage = newPage;
+            level--;
+        }
+
+        int newRoot = allocatePage(INTERNAL);
+        ByteBuffer buffer = writablePage(newRoot);
+        buffer.putInt(PAGE_HEADER, treeRoot);
+        buffer.putInt(PAGE_HEADER + 4, rightPage);
+        buffer.put(INTERNAL_KEYS, key, 0, KEY_BYTES);
+        buffer.putShort(PAGE_COUNT, (short) 1);
+        treeRoot = newRoot;
+        treeHeight++;
+    }
+
+    private int allocatePage(byte type) throws IOException {
+        int page = pageCount++;
+        ByteBuffer buffer = writablePage(page);
+        buffer.put(PAGE_TYPE, type);
+        buffer.putShort(PAGE_COUNT, (short) 0);
+        buffer.putInt(PAGE_NEXT, 0);
+        return page;
+    }
+
+    /**
+     * Returns a page from the cache, reading it if it is not cached. The buffer stays
+     * valid until the next call to trimCache.
+     */
+    private ByteBuffer readPage(int page) throws IOException {
+        CachedPage cached = cache.get(page);
+        if (cached == null) {
+            pageMisses++;
+            cached = new CachedPage(ByteBuffer.allocate(PAGE_SIZE));
+            long position = (long) page * PAGE_SIZE;
+            ByteBuffer buffer = cached.buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break; // Pages past the end of the file are not written yet and read as zeros.
+                }
+            }
+            cache.put(page, cached);
+        }
+        return cached.buffer;
+    }
+
+    /**
+     * Returns a page like readPage and marks it as changed, so that it is written back
+     * before it leaves the cache.
+     */
+    private ByteBuffer writablePage(int page) throws IOException {
+        ByteBuffer buffer = readPage(page);
+        cache.get(page).dirty = true;
+        return buffer;
+    }
+
+    /**
+     * Drops the least recently used pages while there are more than the cache holds,
+     * writing back the ones that changed. This is only called between the steps of an
+     * operation, where no page buffer is in use, so a buffer never outlives its page.
+     */
+    private void trimCache() throws IOException {
+        Iterator<Map.Entry<Integer, CachedPage>> eldest = cache.entrySet().iterator();
+        while (cache.size() > cachePages) {
+            Map.Entry<Integer, CachedPage> entry = eldest.next();
+            writeBack(entry.getKey(), entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    private void writeBack(int page, CachedPage cached) throws IOException {
+        if (cached.dirty) {
+            long position = (long) page * PAGE_SIZE;
+            ByteBuffer buffer = cached.buffer.duplicate();
+            buffer.clear();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, position + buffer.position());
+            }
+            cached.dirty = false;
+        }
+    }
+
+    /**
+     * A page held in the cache.
+     */
+    private static final class CachedPage {
+        final ByteBuffer buffer;
+        boolean dirty;
+
+        CachedPage(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
+
+    // ---------------------------------------------------------------------------------
+    // Records and keys
+
+    private static byte[] encode(RestStop stop) {
+        ByteBuffer record = ByteBuffer.wrap(new byte[RECORD_BYTES]);
+        writeKey(record, 0, stop.getLabel());
+        int at = RECORD_ITEMS;
+        for (int count : stop.supplyCounts()) {
+            record.putInt(at, count);
+            at += 4;
+        }
+        for (int count : stop.obstacleCounts()) {
+            record.putInt(at, count);
+            at += 4;
+        }
+        return record.array();
+    }
+
+    private RestStop decode(ByteBuffer buffer, int at) {
+        RestStop stop = new RestStop(readKey(buffer, at), rules);
+        int item = at + RECORD_ITEMS;
+        for (int i = 0; i < rules.supplyKinds(); i++, item += 4) {
+            stop.addSupply(i, buffer.getInt(item));
+        }
+        for (int i = 0; i < rules.obstacleKinds(); i++, item += 4) {
+            stop.addObstacle(i, buffer.getInt(item));
+        }
+        return stop;
+    }
+
+    private static void writeKey(ByteBuffer buffer, int at, String label) {
+        if (label == null) {
+            buffer.putShort(at, (short) 0);
+            return;
+        }
+        buffer.putShort(at, (short) label.length());
+        for (int i = 0; i < label.length(); i++) {
+            buffer.putChar(at + 2 + 2 * i, label.charAt(i));
+        }
+    }
+
+    /**
+     * Reads a stored label.
+     * 
+     * @return the label, or null if the key is empty
+     */
+    private static String readKey(ByteBuffer buffer, int at) {
+        int length = buffer.getShort(at);
+        if (length == 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = buffer.getChar(at + 2 + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Compares a label with a stored one in the order of String.compareTo, which is the
+     * order of RestStop labels, without reading the stored one into a String.
+     */
+    private static int compareKey(String label, ByteBuffer buffer, int at) {
+        int length = buffer.getShort(at);
+        int limit = Math.min(label.length(), length);
+        for (int i = 0; i < limit; i++) {
+            char stored = buffer.getChar(at + 2 + 2 * i);
+            char c = label.charAt(i);
+            if (c != stored) {
+                return c - stored;
+            }
+        }
+        return label.length() - length;
+    }
+
+    /**
+     * Walks the leaves in label order, starting at a label or at the first leaf.
+     */
+    private class StoreIterator implements Iterator<RestStop> {
+        private int page;
+        private int slot;
+
+        StoreIterator(String from) throws IOException {
+            trimCache();
+            page = treeRoot;
+            for (int level = 1; level < treeHeight; level++) {
+                int child = (from == null) ? 0 : childIndex(page, from);
+                page = readPage(page).getInt(PAGE_HEADER + 4 * child);
+            }
+            if (from != null) {
+                slot = leafIndex(page, from);
+                if (slot < 0) {
+                    slot = -slot - 1;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                trimCache();
+                while (page != 0 && slot >= readPage(page).getShort(PAGE_COUNT)) {
+                    page = readPage(page).getInt(PAGE_NEXT);
+                    slot = 0;
+                }
+                return page != 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public RestStop next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            try {
+                return decode(readPage(page), PAGE_HEADER + (slot++) * RECORD_BYTES);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Main method to build, explore or query a store.
+     * 
+     * @param args {@code build <storeFile> <inputFileName>}, {@code explore <storeFile>} or
+     *             {@code range <storeFile> <from> <to>}, optionally followed by
+     *             {@code --cache <pages>} and, when building a new store,
+     *             {@code --rules <file>} to load its SurvivalRules from a properties file
+     */
+    public static void main(String[] args) {
+        int cachePages = 1024;
+        SurvivalRules rules = SurvivalRules.DEFAULT;
+        int length = args.length;
+        try {
+            while (length >= 2 && (args[length - 2].equals("--cache") || args[length - 2].equals("--rules"))) {
+                if (args[length - 2].equals("--cache")) {
+                    cachePages = Integer.parseInt(args[length - 1]);
+                } else {
+                    rules = SurvivalRules.load(new File(args[length - 1]));
+                }
+                length -= 2;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        boolean valid = length >= 2 && ((args[0].equals("build") && length == 3)
+                || (args[0].equals("explore") && length == 2) || (args[0].equals("range") && length == 4));
+        if (!valid) {
+            System.err.println("Usage: java MountainStore build <storeFile> <inputFileName> [--cache <pages>] [--rules <file>]");
+            System.err.println("       java MountainStore explore <storeFile> [--cache <pages>]");
+            System.err.println("       java MountainStore range <storeFile> <from> <to> [--cache <pages>]");
+            System.exit(1);
+        }
+
+        try (MountainStore store = new MountainStore(new File(args[1]), cachePages, rules)) {
+            switch (args[0]) {
+                case "build":
+                    build(store, new File(args[2]));
+                    break;
+                case "explore":
+                    Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+                    store.explore(out);
+                    out.flush();
+                    break;
+                default:
+                    for (RestStop stop : store.range(args[2], args[3])) {
+                        System.out.println(stop.getLabel());
+                    }
+                    break;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.report(System.err);
+        }
+    }
+
+    /**
+     * Adds the rest stops of a mountain file to a store, reading one line at a time.
+     * 
+     * @param store the store to add to
+     * @param input the mountain file
+     * @throws IOException if the file cannot be read or the store cannot be written
+     */
+    static void build(MountainStore store, File input) throws IOException {
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.LOAD, input.getPath());
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(input), StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    store.add(MountainClimb.parseRestStop(line, store.getRules()));
+                }
+            }
+        } finally {
+            timer.close();
+        }
+    }
+}
@@ -1,45 +1,121 @@
 package project5;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Represents a rest stop in the mountain climbing simulation.
- * A rest stop can have a label, supplies, and obstacles.
+ * A rest stop can have a label, supplies, and obstacles. Supplies and obstacles are kept
+ * as one count per kind, indexed by the SurvivalRules the rest stop was built with.
  * 
  * @version 1.0
  * @author Majo Salgado
  */
 public class RestStop implements Comparable<RestStop> {
-    private String label;
-    private List<String> supplies = new ArrayList<>();
-    private List<String> obstacles = new ArrayList<>();
+    private final String label;
+    private final long sortKey;
+    private final SurvivalRules rules;
+    private final int[] supplies;
+    private final int[] obstacles;
 
     /**
-     * Constructs a new RestStop with the specified label.
+     * Constructs a new RestStop with the specified label under the default rules.
      * 
      * @param label the label of the rest stop
      */
     public RestStop(String label) {
+        this(label, SurvivalRules.DEFAULT);
+    }
+
+    /**
+     * Constructs a new RestStop with the specified label under the given rules.
+     * 
+     * @param label the label of the rest stop
+     * @param rules the rules that say which items are supplies and which are obstacles
+     */
+    public RestStop(String label, SurvivalRules rules) {
         this.label = label;
+        this.sortKey = sortKey(label);
+        this.rules = rules;
+        this.supplies = new int[rules.supplyKinds()];
+        this.obstacles = new int[rules.obstacleKinds()];
+    }
+
+    /**
+     * Packs the first eight characters of a label into a key that orders labels the same
+     * way String.compareTo does whenever two keys differ. Each character below 0xFF takes
+     * one byte. A character of 0xFF or above becomes 0xFF and ends the key, and labels
+     * shorter than eight characters are padded with zeros. Two labels with equal keys
+     * still have to be compared in full.
+     * 
+     * @param label the label
+     * @return the sort key, to be compared as an unsigned number
+     */
+    static long sortKey(String label) {
+        long key = 0;
+        int length = Math.min(label.length(), 8);
+        int i = 0;
+        for (; i < length; i++) {
+            char c = label.charAt(i);
+            if (c >= 0xFF) {
+                key = (key << 8) | 0xFF;
+                i++;
+                break;
+            }
+            key = (key << 8) | c;
+        }
+        return key << (8 * (8 - i));
     }
 
     /**
      * Adds a supply to the rest stop.
      * 
      * @param supply the supply to add
+     * @throws IllegalArgumentException if the item is not a supply under this rest
+     *         stop's rules
      */
     public void addSupply(String supply) {
-        this.supplies.add(supply);
+        int index = rules.supplyIndex(supply);
+        if (index < 0) {
+            throw new IllegalArgumentException("Not a supply: " + supply);
+        }
+        addSupply(index, 1);
+    }
+
+    /**
+     * Adds supplies of one kind to the rest stop.
+     * 
+     * @param supply the index of the supply kind under this rest stop's rules
+     * @param count how many to add
+     */
+    public void addSupply(int supply, int count) {
+        supplies[supply] += count;
     }
 
     /**
      * Adds an obstacle to the rest stop.
      * 
      * @param obstacle the obstacle to add
+     * @throws IllegalArgumentException if the item is not an obstacle under this rest
+     *         stop's rules
      */
     public void addObstacle(String obstacle) {
-        this.obstacles.add(obstacle);
+        int index = rules.obstacleIndex(obstacle);
+        if (index < 0) {
+            throw new IllegalArgumentException("Not an obstacle: " + obstacle);
+        }
+        addObstacle(index, 1);
+    }
+
+    /**
+     * Adds obstacles of one kind to the rest stop.
+     * 
+     * @param obstacle the index of the obstacle kind under this rest stop's rules
+     * @param count how many to add
+     */
+    public void addObstacle(int obstacle, int count) {
+        obstacles[obstacle] += count;
     }
 
     /**
@@ -52,25 +128,64 @@ public class RestStop implements Comparable<RestStop> {
     }
 
     /**
-     * Returns the list of supplies available at the rest stop.
+     * Returns the rules this rest stop was built with.
+     * 
+     * @return the rules
+     */
+    public SurvivalRules getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the list of supplies available at the rest stop, grouped by kind.
      * 
-     * @return the list of supplies
+     * @return a new list of supply names
      */
     public List<String> getSupplies() {
-        return supplies;
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < supplies.length; i++) {
+            names.addAll(Collections.nCopies(supplies[i], rules.supplyName(i)));
+        }
+        return names;
     }
 
     /**
-     * Returns the list of obstacles present at the rest stop.
+     * Returns the list of obstacles present at the rest stop, grouped by kind.
      * 
-     * @return the list of obstacles
+     * @return a new list of obstacle names
      */
     public List<String> getObstacles() {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < obstacles.length; i++) {
+            names.addAll(Collections.nCopies(obstacles[i], rules.obstacleName(i)));
+        }
+        return names;
+    }
+
+    /**
+     * Returns the number of supplies of each kind, indexed by the rules' supply indexes.
+     * The array is not copied and must not be modified.
+     * 
+     * @return one count per supply kind
+     */
+    int[] supplyCounts() {
+        return supplies;
+    }
+
+    /**
+     * Returns the number of obstacles of each kind, indexed by the rules' obstacle
+     * indexes. The array is not copied and must not be modified.
+     * 
+     * @return one count per obstacle kind
+     */
+    int[] obstacleCounts() {
         return obstacles;
     }
 
     /**
-     * Compares this rest stop to another rest stop based on their labels.
+     * Compares this rest stop to another rest stop based on their labels. Most labels
+     * differ in their first eight characters, so this is usually one comparison of the
+     * packed sort keys; only labels that share that prefix compare their full strings.
      * 
      * @param other the other rest stop to compare to
      * @return a negative integer, zero, or a positive integer as this rest stop's label
@@ -78,6 +193,9 @@ public class RestStop implements Comparable<RestStop> {
      */
     @Override
     public int compareTo(RestStop other) {
+        if (this.sortKey != other.sortKey) {
+            return Long.compareUnsigned(this.sortKey, other.sortKey);
+        }
         return this.label.compareTo(other.label);
     }
 
@@ -90,8 +208,8 @@ public class RestStop implements Comparable<RestStop> {
     public String toString() {
         return "RestStop{" +
                "label='" + label + '\'' +
-               ", supplies=" + supplies +
-               ", obstacles=" + obstacles +
+               ", supplies=" + getSupplies() +
+               ", obstacles=" + getObstacles() +
                '}';
     }
 }
@@ -0,0 +1,102 @@
+package project5;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of query results for one tree. Every result is stored together with the
+ * tree's modification count at the time it was computed; as soon as a lookup or store
+ * comes with a different count, the tree has changed and everything cached is dropped.
+ * When the cache is full, the least recently used result makes room for the new one.
+ * <p>
+ * The cache is safe to use from several threads at once. Results must not be modified
+ * once they are stored, since every caller that asks for them gets the same object.
+ * 
+ * @param <K> the type of query keys
+ * @param <V> the type of results
+ * @version 1.0
+ * @author Majo Salgado
+ */
+final class ResultCache<K, V> {
+    private final Map<K, V> results = new LinkedHashMap<K, V>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    };
+    private int capacity;
+    private int version;
+    private long hits;
+
+    /**
+     * Constructs an empty cache.
+     * 
+     * @param capacity the most results to keep, or 0 to keep none
+     */
+    ResultCache(int capacity) {
+        setCapacity(capacity);
+    }
+
+    /**
+     * Changes the most results to keep, dropping the least recently used ones if there
+     * are more.
+     * 
+     * @param capacity the most results to keep, or 0 to keep none
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    synchronized void setCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.capacity = capacity;
+        while (results.size() > capacity) {
+            results.remove(results.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Returns the result cached for a query.
+     * 
+     * @param version the modification count of the tree
+     * @param key the query
+     * @return the cached result, or null if there is none for this version of the tree
+     */
+    synchronized V get(int version, K key) {
+        checkVersion(version);
+        V result = results.get(key);
+        if (result != null) {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches the result of a query.
+     * 
+     * @param version the modification count of the tree the result was computed on
+     * @param key the query
+     * @param result the result, which must not be modified afterwards
+     */
+    synchronized void put(int version, K key, V result) {
+        checkVersion(version);
+        if (capacity > 0) {
+            results.put(key, result);
+        }
+    }
+
+    private void checkVersion(int version) {
+        if (version != this.version) {
+            results.clear();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Returns the number of lookups that found a cached result.
+     * 
+     * @return the number of hits
+     */
+    synchronized long getHits() {
+        return hits;
+    }
+}
@@ -0,0 +1,791 @@
+package project5;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mountain split across several local worker processes, for mountains too large for
+ * the heap of one JVM.
+ * <p>
+ * The first rest stops of a mountain file form the top of the mountain: every later rest
+ * stop is added below them. This coordinator keeps only those first
+ * {@value #TOP_STOPS_PER_WORKER} rest stops per worker as a BSTMountain. Below the top,
+ * the mountain is a row of subtrees, one for each gap between two neighbouring top
+ * labels, and every subtree holds exactly the labels in its gap. Each worker gets a
+ * contiguous run of these subtrees, so each worker holds one label range. The cut points
+ * are chosen so the workers hold about the same number of rest stops, which takes two
+ * passes over the file: one to count the rest stops in every gap, and one to send them
+ * to their workers.
+ * <p>
+ * Lookups, ranges and counts are scattered to the workers whose label range they touch
+ * and gathered in label order. Explore walks the top of the mountain here and hands the
+ * root of every subtree it reaches, together with the supplies carried on arrival and
+ * the depth its leaves must be at, to the worker that holds it. Only that path state
+ * and the labels of the paths found cross process boundaries; the paths stream back as they
+ * are found, and a worker that gets too far ahead waits for the others. A top made of sorted
+ * labels leaves most of the mountain in one subtree, and so in one worker.
+ * <p>
+ * Workers are MountainShardWorker processes on the same machine, started with the
+ * same Java and class path as this one. A sharded mountain is not safe for use by
+ * several threads at once.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public class ShardedMountain implements AutoCloseable {
+    /** The number of top rest stops kept by the coordinator for every worker. */
+    public static final int TOP_STOPS_PER_WORKER = 64;
+    /** The number of paths every worker may find ahead of the one explore is writing out. */
+    public static final int EXPLORE_LINES_AHEAD = 1 << 12;
+    /**
+     * Stands in for a reply line once a worker has closed its output. It is compared by
+     * identity, so no line a worker sends can be taken for it.
+     */
+    private static final String STOPPED = new String("stopped");
+
+    private final SurvivalRules rules;
+    private final Worker[] workers;
+    private final ExecutorService executor;
+
+    private final BSTMountain top;
+    /** The top labels in order; subtree g holds the labels between topLabels[g - 1] and topLabels[g]. */
+    private String[] topLabels = new String[0];
+    /** The first subtree held by every worker, plus the number of subtrees at the end. */
+    private int[] firstSubtree;
+    /** The height of every subtree, 0 if it is empty. */
+    private int[] subtreeHeights = new int[1];
+    private long size;
+    private int height;
+
+    /**
+     * Starts the given number of workers under the default rules.
+     * 
+     * @param workerCount the number of worker processes
+     * @throws IOException if a worker cannot be started
+     */
+    public ShardedMountain(int workerCount) throws IOException {
+        this(workerCount, SurvivalRules.DEFAULT, new ArrayList<>());
+    }
+
+    /**
+     * Starts the given number of workers.
+     * 
+     * @param workerCount the number of worker processes
+     * @param rules the rules that say which items are supplies and which are obstacles
+     * @param jvmOptions options for the JVM of every worker, such as a heap size
+     * @throws IOException if a worker cannot be started
+     * @throws IllegalArgumentException if workerCount is less than 1
+     */
+    public ShardedMountain(int workerCount, SurvivalRules rules, List<String> jvmOptions) throws IOException {
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("Worker count must be at least 1: " + workerCount);
+        }
+        this.rules = rules;
+        this.top = new BSTMountain(rules);
+        this.workers = new Worker[workerCount];
+        this.firstSubtree = new int[workerCount + 1];
+        this.executor = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "mountain-shard-gather");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (int i = 0; i < workerCount; i++) {
+                workers[i] = new Worker(i, jvmOptions);
+                workers[i].send("RULES\n" + rules + "END");
+                workers[i].expectOk();
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Loads a mountain file, spreading its rest stops over the workers. A sharded
+     * mountain can only be loaded once.
+     * 
+     * @param file the mountain file
+     * @throws IOException if the file cannot be read or a worker fails
+     * @throws IllegalStateException if a mountain was already loaded
+     */
+    public void load(File file) throws IOException {
+        if (size > 0) {
+            throw new IllegalStateException("A mountain was already loaded");
+        }
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.LOAD, file.getPath());
+        try {
+            int topStops = TOP_STOPS_PER_WORKER * workers.length;
+            long[] subtreeStops;
+            try (BufferedReader reader = open(file)) {
+                int lines = 0;
+                String line;
+                while (lines < topStops && (line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty()) {
+                        top.add(MountainClimb.parseRestStop(line, rules));
+                        lines++;
+                    }
+                }
+                topLabels = new String[top.size()];
+                for (int i = 0; i < topLabels.length; i++) {
+                    topLabels[i] = top.get(i).getLabel();
+                }
+                subtreeStops = new long[topLabels.length + 1];
+                while ((line = reader.readLine()) != null) {
+                    String label = label(line);
+                    if (label != null && Arrays.binarySearch(topLabels, label) < 0) {
+                        subtreeStops[subtree(label)]++;
+                    }
+                }
+            }
+            firstSubtree = cutPoints(subtreeStops, workers.length);
+
+            try (BufferedReader reader = open(file)) {
+                int lines = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty() || lines++ < topStops) {
+                        continue;
+                    }
+                    String label = label(line);
+                    if (Arrays.binarySearch(topLabels, label) < 0) {
+                        int subtree = subtree(label);
+                        workers[workerOf(subtree)].send("ADD " + subtree + " " + line);
+                    }
+                }
+            }
+
+            subtreeHeights = new int[topLabels.length + 1];
+            size = top.size();
+            for (Worker worker : workers) {
+                worker.send("LOADED");
+                worker.expectOk();
+                worker.send("HEIGHTS");
+                for (String reply : worker.readReply()) {
+                    String[] words = reply.split(" ");
+                    subtreeHeights[Integer.parseInt(words[0])] = Integer.parseInt(words[1]);
+                }
+                worker.send("SIZE");
+                size += Long.parseLong(worker.readReply().get(0));
+            }
+            height = computeHeight();
+        } finally {
+            timer.close();
+        }
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /**
+     * Returns the label of a line of a mountain file, as MountainClimb.parseRestStop reads it.
+     */
+    private static String label(String line) {
+        String trimmed = line.trim();
+        return trimmed.isEmpty() ? null : trimmed.split("\\s+", 2)[0];
+    }
+
+    /**
+     * Splits the subtrees into contiguous runs, one per worker, with about the same number
+     * of rest stops in each.
+     * 
+     * @param subtreeStops the number of rest stops in every subtree
+     * @param workerCount the number of workers
+     * @return the first subtree of every worker, followed by the number of subtrees
+     */
+    static int[] cutPoints(long[] subtreeStops, int workerCount) {
+        long total = 0;
+        for (long stops : subtreeStops) {
+            total += stops;
+        }
+        int[] cuts = new int[workerCount + 1];
+        int worker = 1;
+        long sum = 0;
+        for (int subtree = 0; subtree < subtreeStops.length && worker < workerCount; subtree++) {
+            sum += subtreeStops[subtree];
+            // Move on to the next worker once this one has its share of the rest stops.
+            while (worker < workerCount && sum * workerCount >= total * worker) {
+                cuts[worker++] = subtree + 1;
+            }
+        }
+        while (worker <= workerCount) {
+            cuts[worker++] = subtreeStops.length;
+        }
+        return cuts;
+    }
+
+    /**
+     * Returns the subtree a label that is not a top label belongs to.
+     */
+    private int subtree(String label) {
+        return -Arrays.binarySearch(topLabels, label) - 1;
+    }
+
+    private int workerOf(int subtree) {
+        int worker = Arrays.binarySearch(firstSubtree, 0, workers.length, subtree);
+        if (worker < 0) {
+            return -worker - 2;
+        }
+        // Skip workers that hold no subtrees.
+        while (worker + 1 < workers.length && firstSubtree[worker + 1] == subtree) {
+            worker++;
+        }
+        return worker;
+    }
+
+    /**
+     * Computes the height of the mountain from the top and the heights of the subtrees
+     * below it. The top is walked with an explicit stack, since a top of sorted labels is
+     * a chain of {@value #TOP_STOPS_PER_WORKER} rest stops per worker.
+     */
+    private int computeHeight() {
+        if (top.root == null) {
+            return 0;
+        }
+        BST<RestStop>.Node[] nodes = top.newNodeArray(top.height() + 1);
+        int[] depths = new int[nodes.length];
+        int size = 0;
+        nodes[size] = top.root;
+        depths[size++] = 0;
+        int result = 0;
+        while (size > 0) {
+            size--;
+            BST<RestStop>.Node node = nodes[size];
+            int depth = depths[size];
+            nodes[size] = null;
+            int rank = rank(node.getData().getLabel());
+            result = Math.max(result, depth + 1);
+            // A side without a top child holds the subtree of the gap next to the node.
+            if (node.left != null) {
+                nodes[size] = node.left;
+                depths[size++] = depth + 1;
+            } else {
+                result = Math.max(result, depth + 1 + subtreeHeights[rank]);
+            }
+            if (node.right != null) {
+                nodes[size] = node.right;
+                depths[size++] = depth + 1;
+            } else {
+                result = Math.max(result, depth + 1 + subtreeHeights[rank + 1]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of rest stops in the mountain.
+     * 
+     * @return the number of rest stops
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of levels of rest stops in the mountain.
+     * 
+     * @return the height of the mountain
+     */
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Checks if the mountain has a rest stop with the given label.
+     * 
+     * @param label the label
+     * @return true if the mountain has the rest stop
+     * @throws IOException if the worker that would hold it fails
+     */
+    public boolean contains(String label) throws IOException {
+        if (Arrays.binarySearch(topLabels, label) >= 0) {
+            return true;
+        }
+        int subtree = subtree(label);
+        if (subtreeHeights[subtree] == 0) {
+            return false;
+        }
+        Worker worker = workers[workerOf(subtree)];
+        worker.send("CONTAINS " + subtree + " " + label);
+        return Boolean.parseBoolean(worker.readReply().get(0));
+    }
+
+    /**
+     * Returns the labels between two labels, both inclusive, in order. The workers whose
+     * label ranges overlap the range are asked at the same time.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the labels l with from <= l <= to, in order
+     * @throws IOException if a worker fails
+     */
+    public List<String> range(String from, String to) throws IOException {
+        List<String> labels = new ArrayList<>();
+        for (List<String> part : scatter("RANGE", from, to)) {
+            labels.addAll(part);
+        }
+        for (String label : topLabels) {
+            if (label.compareTo(from) >= 0 && label.compareTo(to) <= 0) {
+                labels.add(label);
+            }
+        }
+        // The worker parts come in label order, so this merges the top labels into them.
+        labels.sort(null);
+        return labels;
+    }
+
+    /**
+     * Counts the rest stops between two labels, both inclusive.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the number of rest stops with from <= label <= to
+     * @throws IOException if a worker fails
+     */
+    public long count(String from, String to) throws IOException {
+        long count = 0;
+        for (List<String> part : scatter("COUNT", from, to)) {
+            count += Long.parseLong(part.get(0));
+        }
+        for (String label : topLabels) {
+            if (label.compareTo(from) >= 0 && label.compareTo(to) <= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends a range command to every worker whose labels can fall in the range, all at
+     * once, and gathers the replies in worker order.
+     */
+    private List<List<String>> scatter(String command, String from, String to) throws IOException {
+        if (from.compareTo(to) > 0) {
+            return new ArrayList<>();
+        }
+        int firstWorker = workerOf(subtreeOf(from));
+        int lastWorker = workerOf(subtreeOf(to));
+        List<CompletableFuture<List<String>>> replies = new ArrayList<>();
+        for (int i = firstWorker; i <= lastWorker; i++) {
+            Worker worker = workers[i];
+            replies.add(CompletableFuture.supplyAsync(() -> worker.ask(command + " " + from + " " + to), executor));
+        }
+        List<List<String>> parts = new ArrayList<>();
+        for (CompletableFuture<List<String>> reply : replies) {
+            parts.add(gather(reply));
+        }
+        return parts;
+    }
+
+    /**
+     * Returns the subtree a label belongs to, or would belong to if it is a top label.
+     */
+    private int subtreeOf(String label) {
+        int index = Arrays.binarySearch(topLabels, label);
+        return (index >= 0) ? index : -index - 1;
+    }
+
+    private static List<String> gather(CompletableFuture<List<String>> reply) throws IOException {
+        try {
+            return reply.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Writes every successful path down the mountain, one per line in label order, the
+     * same way MountainStore.explore does. The top of the mountain is walked here; the
+     * subtrees reached on the way are explored by their workers, every worker working
+     * through its own subtrees while the others work through theirs.
+     * <p>
+     * Workers send their paths as they find them. Every worker may get at most
+     * {@value #EXPLORE_LINES_AHEAD} paths ahead of the one being written out; after that
+     * it waits, so the paths held here stay bounded however many there are. After an
+     * IOException the workers may be out of step, and the mountain should be closed.
+     * 
+     * @param out where to write the paths
+     * @return the number of successful paths
+     * @throws IOException if a worker fails or the output cannot be written
+     */
+    public long explore(Appendable out) throws IOException {
+        if (size == 0) {
+            return 0;
+        }
+        MountainMetrics.PhaseTimer timer = MountainMetrics.startPhase(MountainMetrics.Phase.EXPLORE, null);
+        List<Future<?>> pumps = new ArrayList<>();
+        try {
+            List<ExploreTask> tasks = planExplore();
+            List<List<String>> commandsByWorker = new ArrayList<>();
+            List<BlockingQueue<String>> replies = new ArrayList<>();
+            for (int i = 0; i < workers.length; i++) {
+                commandsByWorker.add(new ArrayList<>());
+                replies.add(new ArrayBlockingQueue<>(EXPLORE_LINES_AHEAD));
+            }
+            for (ExploreTask task : tasks) {
+                if (task.command != null) {
+                    commandsByWorker.get(task.worker).add(task.command);
+                }
+            }
+            // Every worker answers its tasks one after another, in the order they come in.
+            for (int i = 0; i < workers.length; i++) {
+                Worker worker = workers[i];
+                List<String> commands = commandsByWorker.get(i);
+                BlockingQueue<String> reply = replies.get(i);
+                if (!commands.isEmpty()) {
+                    pumps.add(executor.submit(() -> worker.pump(commands, reply)));
+                }
+            }
+
+            long found = 0;
+            for (ExploreTask task : tasks) {
+                if (task.command == null) {
+                    out.append(task.prefix.toString()).append('\n');
+                    found++;
+                    continue;
+                }
+                String line;
+                while (!(line = take(replies.get(task.worker))).equals("OK")) {
+                    if (!line.startsWith("= ")) {
+                        throw workers[task.worker].failure(line);
+                    }
+                    task.prefix.appendTo(out);
+                    out.append(' ').append(line, 2, line.length()).append('\n');
+                    found++;
+                }
+            }
+            if (MountainMetrics.isEnabled()) {
+                MountainMetrics.recordSearch(0, 0, found);
+            }
+            return found;
+        } finally {
+            for (Future<?> pump : pumps) {
+                pump.cancel(true);
+            }
+            timer.close();
+        }
+    }
+
+    private static String take(BlockingQueue<String> replies) throws IOException {
+        try {
+            return replies.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a worker", e);
+        }
+    }
+
+    /**
+     * A successful path that ends in the top of the mountain, or a subtree to explore with
+     * the path leading up to it.
+     */
+    private static class ExploreTask {
+        final MountainPath prefix;
+        final String command;
+        final int worker;
+
+        ExploreTask(MountainPath prefix, String command, int worker) {
+            this.prefix = prefix;
+            this.command = command;
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * Walks the top of the mountain in label order, carrying the hiker's supplies down the
+     * way BSTMountain.explore does, and lists the paths that end in the top and the
+     * subtrees that are reached. The top is walked with an explicit stack, since a top of
+     * sorted labels is a chain of {@value #TOP_STOPS_PER_WORKER} rest stops per worker.
+     * 
+     * @return the tasks in label order
+     */
+    private List<ExploreTask> planExplore() {
+        List<ExploreTask> tasks = new ArrayList<>();
+        // An entry is a top node, or a subtree below the top if its node is null. Children
+        // are pushed right first, so that they come off the stack left to right.
+        int capacity = top.height() + 2;
+        BST<RestStop>.Node[] nodes = top.newNodeArray(capacity);
+        int[] subtrees = new int[capacity];
+        int[] depths = new int[capacity];
+        int[][] suppliesStack = new int[capacity][];
+        MountainPath[] parentPaths = new MountainPath[capacity];
+        int size = 0;
+        nodes[size] = top.root;
+        suppliesStack[size++] = new int[rules.supplyKinds()];
+
+        while (size > 0) {
+            size--;
+            BST<RestStop>.Node node = nodes[size];
+            int depth = depths[size];
+            int[] carried = suppliesStack[size];
+            MountainPath parentPath = parentPaths[size];
+            nodes[size] = null;
+            suppliesStack[size] = null;
+            parentPaths[size] = null;
+            if (node == null) {
+                tasks.add(exploreTask(subtrees[size], depth, carried, parentPath));
+                continue;
+            }
+
+            RestStop stop = node.getData();
+            int rank = rank(stop.getLabel());
+            // A side without a top child holds the subtree of the gap next to the node, if any.
+            boolean hasLeft = node.left != null || subtreeHeights[rank] > 0;
+            boolean hasRight = node.right != null || subtreeHeights[rank + 1] > 0;
+            boolean isLeaf = !hasLeft && !hasRight;
+
+            MountainPath path = new MountainPath(parentPath, stop);
+            if (rules.arrive(carried, stop, isLeaf) != SurvivalRules.SURVIVED) {
+                continue;
+            }
+            if (isLeaf) {
+                if (depth == height - 1) {
+                    tasks.add(new ExploreTask(path, null, -1));
+                }
+                continue;
+            }
+            if (hasRight) {
+                nodes[size] = node.right;
+                subtrees[size] = rank + 1;
+                depths[size] = depth + 1;
+                suppliesStack[size] = hasLeft ? carried.clone() : carried;
+                parentPaths[size++] = path;
+            }
+            if (hasLeft) {
+                nodes[size] = node.left;
+                subtrees[size] = rank;
+                depths[size] = depth + 1;
+                suppliesStack[size] = carried;
+                parentPaths[size++] = path;
+            }
+        }
+        return tasks;
+    }
+
+    private ExploreTask exploreTask(int subtree, int depth, int[] carried, MountainPath parentPath) {
+        StringBuilder command = new StringBuilder("EXPLORE ").append(subtree);
+        command.append(' ').append(height - 1 - depth);
+        for (int count : carried) {
+            command.append(' ').append(count);
+        }
+        return new ExploreTask(parentPath, command.toString(), workerOf(subtree));
+    }
+
+    private int rank(String topLabel) {
+        return Arrays.binarySearch(topLabels, topLabel);
+    }
+
+    /**
+     * Stops the workers.
+     */
+    @Override
+    public void close() {
+        for (Worker worker : workers) {
+            if (worker != null) {
+                worker.stop();
+            }
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * One worker process and the pipes to it.
+     */
+    private static class Worker {
+        private final int index;
+        private final Process process;
+        private final Writer in;
+        private final BufferedReader out;
+
+        Worker(int index, List<String> jvmOptions) throws IOException {
+            this.index = index;
+            List<String> command = new ArrayList<>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            command.addAll(jvmOptions);
+            String modulePath = System.getProperty("jdk.module.path");
+            if (modulePath != null) {
+                command.addAll(Arrays.asList("-p", modulePath, "-m", "project5/project5.MountainShardWorker"));
+            } else {
+                command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "project5.MountainShardWorker"));
+            }
+            this.process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            this.in = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+            this.out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        void send(String line) throws IOException {
+            in.write(line);
+            in.write('\n');
+        }
+
+        /**
+         * Reads the reply to the last command, flushing the commands sent so far first.
+         * 
+         * @return the result lines, without their prefix and the closing OK
+         */
+        List<String> readReply() throws IOException {
+            in.flush();
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.equals("OK")) {
+                    return lines;
+                }
+                if (!line.startsWith("= ")) {
+                    throw failure(line);
+                }
+                lines.add(line.substring(2));
+            }
+            throw failure(null);
+        }
+
+        /**
+         * Returns the exception for a reply line that is neither a result nor OK.
+         * 
+         * @param line the line, or null if the worker closed its output
+         * @return the exception to throw
+         */
+        IOException failure(String line) {
+            if (line == null || line == STOPPED) {
+                return new IOException("Worker " + index + " stopped");
+            }
+            if (line.startsWith("ERROR ")) {
+                return new IOException("Worker " + index + ": " + line.substring("ERROR ".length()));
+            }
+            return new IOException("Unexpected reply from worker " + index + ": " + line);
+        }
+
+        /**
+         * Sends commands one at a time and passes the lines of their replies on to a
+         * queue as they come in, closing OK or ERROR included, so that they can be
+         * written out while the worker goes on. Whenever the queue is full, this stops
+         * reading, and the worker stops once the pipe is full too. A worker that closes
+         * its output is passed on as {@link #STOPPED}, and a failed pipe as an ERROR line;
+         * either one ends the queue, and both wait for room like any other line.
+         * 
+         * @param commands the commands
+         * @param replies the queue for the reply lines
+         */
+        synchronized void pump(List<String> commands, BlockingQueue<String> replies) {
+            try {
+                try {
+                    for (String command : commands) {
+                        send(command);
+                        in.flush();
+                        String line;
+                        do {
+                            line = out.readLine();
+                            if (line == null) {
+                                replies.put(STOPPED);
+                                return;
+                            }
+                            replies.put(line);
+                        } while (line.startsWith("= "));
+                    }
+                } catch (IOException e) {
+                    replies.put("ERROR " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void expectOk() throws IOException {
+            readReply();
+        }
+
+        /**
+         * Sends a command and reads its reply, for use from the gathering threads.
+         */
+        synchronized List<String> ask(String command) {
+            try {
+                send(command);
+                return readReply();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void stop() {
+            try {
+                send("QUIT");
+                in.close();
+                if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                    process.destroy();
+                }
+            } catch (IOException e) {
+                process.destroy();
+            } catch (InterruptedException e) {
+                process.destroy();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Main method to explore or query a mountain file with local worker processes.
+     * 
+     * @param args {@code <workers> <inputFileName>} optionally followed by
+     *             {@code contains <label>}, {@code range <from> <to>} or
+     *             {@code count <from> <to>}; without a query all successful paths are printed
+     */
+    public static void main(String[] args) {
+        boolean valid = args.length == 2 || (args.length == 4 && args[2].equals("contains"))
+                || (args.length == 5 && (args[2].equals("range") || args[2].equals("count")));
+        if (!valid) {
+            System.err.println("Usage: java ShardedMountain <workers> <inputFileName> "
+                    + "[contains <label> | range <from> <to> | count <from> <to>]");
+            System.exit(1);
+        }
+        try (ShardedMountain mountain = new ShardedMountain(Integer.parseInt(args[0]))) {
+            mountain.load(new File(args[1]));
+            if (args.length == 2) {
+                Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+                mountain.explore(out);
+                out.flush();
+            } else if (args[2].equals("contains")) {
+                System.out.println(mountain.contains(args[3]));
+            } else if (args[2].equals("range")) {
+                for (String label : mountain.range(args[3], args[4])) {
+                    System.out.println(label);
+                }
+            } else {
+                System.out.println(mountain.count(args[3], args[4]));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+        if (MountainMetrics.isEnabled()) {
+            MountainMetrics.report(System.err);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package project5;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The operations shared by the sorted trees in this project, so that code which only
+ * looks elements up or walks them in order can work with any of them.
+ * 
+ * @param <E> the type of elements in the tree, which must be comparable
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public interface SortedTree<E extends Comparable<E>> extends Iterable<E> {
+
+    /**
+     * Adds the specified element to the tree.
+     * 
+     * @param e the element to add
+     * @return true if the element was added, false if it was already present
+     */
+    boolean add(E e);
+
+    /**
+     * Removes the specified element from the tree.
+     * 
+     * @param o the element to remove
+     * @return true if the element was removed, false if it was not found
+     */
+    boolean remove(Object o);
+
+    /**
+     * Removes all elements from the tree.
+     */
+    void clear();
+
+    /**
+     * Checks if the tree contains the specified element.
+     * 
+     * @param o the element to check for
+     * @return true if the element is found, false otherwise
+     */
+    boolean contains(Object o);
+
+    /**
+     * Returns the number of elements in the tree.
+     * 
+     * @return the number of elements in the tree
+     */
+    int size();
+
+    /**
+     * Checks if the tree is empty.
+     * 
+     * @return true if the tree is empty, false otherwise
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns the number of levels of nodes in the tree.
+     * 
+     * @return the height of the tree
+     */
+    int height();
+
+    /**
+     * Returns the element at the specified index in ascending order.
+     * 
+     * @param index the index of the element to return
+     * @return the element at the specified index
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    E get(int index);
+
+    /**
+     * Returns the elements between two bounds, both inclusive, in ascending order.
+     * 
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the elements e with from <= e <= to, in ascending order
+     */
+    List<E> range(E from, E to);
+
+    /**
+     * Returns the first (smallest) element currently in the tree.
+     * 
+     * @return the first (smallest) element
+     * @throws java.util.NoSuchElementException if the tree is empty
+     */
+    E first();
+
+    /**
+     * Returns the last (largest) element currently in the tree.
+     * 
+     * @return the last (largest) element
+     * @throws java.util.NoSuchElementException if the tree is empty
+     */
+    E last();
+
+    /**
+     * Finds the predecessor of the specified element.
+     * 
+     * @param e the element to find the predecessor of
+     * @return the predecessor of the element, or null if the element is not in the
+     *         tree or has no predecessor
+     */
+    E predecessor(E e);
+
+    /**
+     * Finds the successor of the specified element.
+     * 
+     * @param e the element to find the successor of
+     * @return the successor of the element, or null if the element is not in the
+     *         tree or has no successor
+     */
+    E successor(E e);
+
+    /**
+     * Returns an iterator that visits every node before its children.
+     * 
+     * @return a preorder iterator
+     */
+    Iterator<E> preorderIterator();
+
+    /**
+     * Returns an iterator that visits every node after its children.
+     * 
+     * @return a postorder iterator
+     */
+    Iterator<E> postorderIterator();
+
+    /**
+     * Prints the tree structure.
+     */
+    void printTree();
+
+    /**
+     * Returns a string representation of the tree in tree format.
+     * 
+     * @return a string representation of the tree in tree format
+     */
+    String toStringTreeFormat();
+}
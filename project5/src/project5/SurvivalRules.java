@@ -0,0 +1,500 @@
+package project5;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The rules a hiker follows on the way down the mountain: which items are supplies,
+ * which are obstacles, what every step down uses up and what each obstacle uses up.
+ * The rules are read from a properties file such as
+ * 
+ * <pre>
+ * supplies = food, raft, axe
+ * step = food
+ * obstacle.fallen\ tree = axe
+ * obstacle.river = raft
+ * </pre>
+ * 
+ * where {@code supplies} lists the supply kinds, {@code step} lists what one step down
+ * to the next rest stop uses up, and each {@code obstacle.<name>} lists what clearing
+ * one obstacle of that kind uses up. A supply listed twice is used up twice. Spaces in
+ * an obstacle's name are escaped with a backslash, as usual in properties files.
+ * 
+ * Each supply and obstacle kind gets an index, supplies in the order they are listed and
+ * obstacles in label order, and the requirements are compiled into arrays indexed by
+ * them. A hiker's supplies are then an int array with one count per supply kind, and
+ * checking a rest stop is a few array reads.
+ * 
+ * @version 1.0
+ * @author Majo Salgado
+ */
+public final class SurvivalRules {
+    /** Returned by arrive when the hiker gets through a rest stop. */
+    public static final int SURVIVED = -1;
+
+    /** The rules of the original simulation, which are used unless others are loaded. */
+    public static final SurvivalRules DEFAULT;
+
+    static {
+        Properties properties = new Properties();
+        properties.setProperty("supplies", "food, raft, axe");
+        properties.setProperty("step", "food");
+        properties.setProperty("obstacle.fallen tree", "axe");
+        properties.setProperty("obstacle.river", "raft");
+        DEFAULT = fromProperties(properties);
+    }
+
+    private final String[] supplies;
+    private final String[] obstacles;
+    private final Map<String, Integer> supplyIndexes = new HashMap<>();
+    private final Map<String, Integer> obstacleIndexes = new HashMap<>();
+    /** How many of each supply one step down uses up. */
+    private final int[] stepCost;
+    /** How many supplies one step down uses up in total. */
+    private final int stepTotal;
+    /** How many of each supply clearing one obstacle uses up, by obstacle. */
+    private final int[][] clearCost;
+    /** How many supplies clearing one obstacle uses up in total, by obstacle. */
+    private final int[] clearTotal;
+    /** The rejection recorded in MountainMetrics when a supply runs out, by supply. */
+    private final MountainMetrics.Rejection[] rejections;
+    private final Pattern itemPattern;
+    /** The item matched by each group of the item pattern. */
+    private final int[] itemOfGroup;
+
+    private SurvivalRules(String[] supplies, String[] obstacles, int[] stepCost, int[][] clearCost) {
+        this.supplies = supplies;
+        this.obstacles = obstacles;
+        this.stepCost = stepCost;
+        this.clearCost = clearCost;
+        this.stepTotal = total(stepCost);
+        this.clearTotal = new int[obstacles.length];
+        this.rejections = new MountainMetrics.Rejection[supplies.length];
+
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < supplies.length; i++) {
+            supplyIndexes.put(supplies[i], i);
+            rejections[i] = rejectionFor(supplies[i]);
+            items.add(i);
+        }
+        for (int i = 0; i < obstacles.length; i++) {
+            obstacleIndexes.put(obstacles[i], i);
+            clearTotal[i] = total(clearCost[i]);
+            items.add(supplies.length + i);
+        }
+        // One group per item, longest first so that an item is not matched by a shorter
+        // item it starts with.
+        items.sort(Comparator.comparingInt((Integer item) -> itemName(item).length()).reversed());
+        this.itemOfGroup = new int[items.size() + 1];
+        StringBuilder pattern = new StringBuilder();
+        for (int group = 1; group <= items.size(); group++) {
+            int item = items.get(group - 1);
+            itemOfGroup[group] = item;
+            if (pattern.length() > 0) {
+                pattern.append('|');
+            }
+            pattern.append('(').append(Pattern.quote(itemName(item))).append(')');
+        }
+        this.itemPattern = Pattern.compile(pattern.toString());
+    }
+
+    /**
+     * Loads rules from a properties file.
+     * 
+     * @param file the file to read
+     * @return the compiled rules
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the rules are not valid
+     */
+    public static SurvivalRules load(File file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(file)) {
+            properties.load(reader);
+        }
+        return fromProperties(properties);
+    }
+
+    /**
+     * Compiles rules from properties in the format described above.
+     * 
+     * @param properties the rules
+     * @return the compiled rules
+     * @throws IllegalArgumentException if no supplies are listed, if an item is named
+     *         twice, or if a requirement names a supply that is not listed
+     */
+    public static SurvivalRules fromProperties(Properties properties) {
+        String[] supplies = split(properties.getProperty("supplies", ""));
+        if (supplies.length == 0) {
+            throw new IllegalArgumentException("No supplies are listed");
+        }
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < supplies.length; i++) {
+            if (indexes.put(supplies[i], i) != null) {
+                throw new IllegalArgumentException("Supply listed twice: " + supplies[i]);
+            }
+        }
+
+        Map<String, String> requirements = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith("obstacle.")) {
+                String obstacle = key.substring("obstacle.".length()).trim();
+                if (obstacle.isEmpty() || indexes.containsKey(obstacle)) {
+                    throw new IllegalArgumentException("Not a valid obstacle name: '" + obstacle + "'");
+                }
+                requirements.put(obstacle, properties.getProperty(key));
+            }
+        }
+        String[] obstacles = requirements.keySet().toArray(new String[0]);
+        int[][] clearCost = new int[obstacles.length][];
+        for (int i = 0; i < obstacles.length; i++) {
+            clearCost[i] = cost(requirements.get(obstacles[i]), indexes, supplies.length);
+        }
+        int[] stepCost = cost(properties.getProperty("step", ""), indexes, supplies.length);
+        return new SurvivalRules(supplies, obstacles, stepCost, clearCost);
+    }
+
+    private static String[] split(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split(",")) {
+            if (!item.isBlank()) {
+                items.add(item.trim());
+            }
+        }
+        return items.toArray(new String[0]);
+    }
+
+    private static int[] cost(String list, Map<String, Integer> indexes, int supplyCount) {
+        int[] cost = new int[supplyCount];
+        for (String supply : split(list)) {
+            Integer index = indexes.get(supply);
+            if (index == null) {
+                throw new IllegalArgumentException("Not a listed supply: " + supply);
+            }
+            cost[index]++;
+        }
+        return cost;
+    }
+
+    /**
+     * Returns the total number of supplies in a set of counts.
+     * 
+     * @param counts one count per supply kind
+     * @return the total
+     */
+    public static int total(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    private static MountainMetrics.Rejection rejectionFor(String supply) {
+        switch (supply) {
+            case "food":
+                return MountainMetrics.Rejection.NO_FOOD;
+            case "axe":
+                return MountainMetrics.Rejection.NO_AXE;
+            case "raft":
+                return MountainMetrics.Rejection.NO_RAFT;
+            default:
+                return MountainMetrics.Rejection.NO_SUPPLY;
+        }
+    }
+
+    /**
+     * Returns the number of supply kinds.
+     * 
+     * @return the number of supply kinds
+     */
+    public int supplyKinds() {
+        return supplies.length;
+    }
+
+    /**
+     * Returns the number of obstacle kinds.
+     * 
+     * @return the number of obstacle kinds
+     */
+    public int obstacleKinds() {
+        return obstacles.length;
+    }
+
+    /**
+     * Returns the name of a supply kind.
+     * 
+     * @param supply the index of the supply kind
+     * @return its name
+     */
+    public String supplyName(int supply) {
+        return supplies[supply];
+    }
+
+    /**
+     * Returns the name of an obstacle kind.
+     * 
+     * @param obstacle the index of the obstacle kind
+     * @return its name
+     */
+    public String obstacleName(int obstacle) {
+        return obstacles[obstacle];
+    }
+
+    /**
+     * Returns the index of a supply kind.
+     * 
+     * @param name the name of the supply
+     * @return its index, or -1 if it is not a supply
+     */
+    public int supplyIndex(String name) {
+        Integer index = supplyIndexes.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns the index of an obstacle kind.
+     * 
+     * @param name the name of the obstacle
+     * @return its index, or -1 if it is not an obstacle
+     */
+    public int obstacleIndex(String name) {
+        Integer index = obstacleIndexes.get(name);
+        return (index == null) ? -1 : index;
+    }
+
+    /**
+     * Returns a pattern that matches the name of any supply or obstacle. Use item to
+     * find out which one a match found.
+     * 
+     * @return the pattern
+     */
+    public Pattern itemPattern() {
+        return itemPattern;
+    }
+
+    /**
+     * Returns the item found by the last match of a matcher for the item pattern. Items
+     * number the supply kinds first and the obstacle kinds after them, so an item below
+     * supplyKinds() is that supply and any other item is obstacle item - supplyKinds().
+     * 
+     * @param matcher a matcher for the item pattern that has just found a match
+     * @return the item that was matched
+     */
+    public int item(Matcher matcher) {
+        int group = 1;
+        while (matcher.start(group) < 0) {
+            group++;
+        }
+        return itemOfGroup[group];
+    }
+
+    private String itemName(int item) {
+        return (item < supplies.length) ? supplies[item] : obstacles[item - supplies.length];
+    }
+
+    /**
+     * Counts the supplies in a list of supply names. Names that are not supplies under
+     * these rules are ignored, since they can never be used up.
+     * 
+     * @param names the supply names
+     * @return one count per supply kind
+     */
+    public int[] count(List<String> names) {
+        int[] counts = new int[supplies.length];
+        for (String name : names) {
+            int supply = supplyIndex(name);
+            if (supply >= 0) {
+                counts[supply]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Lets a hiker arrive at a rest stop: the supplies there are collected, then one step
+     * down is paid for unless the stop is a leaf, then every obstacle is cleared. The
+     * carried counts are updated in place and are not meaningful if the hiker does not
+     * get through.
+     * 
+     * @param carried one count per supply kind
+     * @param stop the rest stop, which must have been built with these rules
+     * @param isLeaf whether the rest stop is a leaf
+     * @return SURVIVED, or the index of the supply that ran out
+     */
+    public int arrive(int[] carried, RestStop stop, boolean isLeaf) {
+        return arrive(carried, stop.supplyCounts(), stop.obstacleCounts(), isLeaf);
+    }
+
+    /**
+     * Lets a hiker arrive at a rest stop given by its item counts, as arrive does for a
+     * RestStop.
+     * 
+     * @param carried one count per supply kind
+     * @param collected the supplies at the rest stop, one count per supply kind
+     * @param found the obstacles at the rest stop, one count per obstacle kind
+     * @param isLeaf whether the rest stop is a leaf
+     * @return SURVIVED, or the index of the supply that ran out
+     */
+    public int arrive(int[] carried, int[] collected, int[] found, boolean isLeaf) {
+        for (int s = 0; s < carried.length; s++) {
+            carried[s] += collected[s];
+        }
+        if (!isLeaf) {
+            int shortage = use(carried, stepCost, 1);
+            if (shortage != SURVIVED) {
+                return shortage;
+            }
+        }
+        for (int o = 0; o < found.length; o++) {
+            if (found[o] != 0) {
+                int shortage = use(carried, clearCost[o], found[o]);
+                if (shortage != SURVIVED) {
+                    return shortage;
+                }
+            }
+        }
+        return SURVIVED;
+    }
+
+    /**
+     * Uses up the supplies for one step down, if they are carried.
+     * 
+     * @param carried one count per supply kind
+     * @return SURVIVED, or the index of the supply that ran out, in which case nothing
+     *         is used up
+     */
+    public int step(int[] carried) {
+        return useAll(carried, stepCost);
+    }
+
+    /**
+     * Uses up the supplies that clear one obstacle, if they are carried.
+     * 
+     * @param carried one count per supply kind
+     * @param obstacle the index of the obstacle kind
+     * @return SURVIVED, or the index of the supply that ran out, in which case nothing
+     *         is used up
+     */
+    public int clear(int[] carried, int obstacle) {
+        return useAll(carried, clearCost[obstacle]);
+    }
+
+    private static int use(int[] carried, int[] cost, int times) {
+        for (int s = 0; s < carried.length; s++) {
+            carried[s] -= cost[s] * times;
+            if (carried[s] < 0) {
+                return s;
+            }
+        }
+        return SURVIVED;
+    }
+
+    private static int useAll(int[] carried, int[] cost) {
+        for (int s = 0; s < carried.length; s++) {
+            if (carried[s] < cost[s]) {
+                return s;
+            }
+        }
+        for (int s = 0; s < carried.length; s++) {
+            carried[s] -= cost[s];
+        }
+        return SURVIVED;
+    }
+
+    /**
+     * Returns the change in the number of carried supplies that getting through a rest
+     * stop brings, not counting the step down from it.
+     * 
+     * @param stop the rest stop, which must have been built with these rules
+     * @return the supplies collected there minus the supplies its obstacles use up
+     */
+    public int gain(RestStop stop) {
+        int gain = total(stop.supplyCounts());
+        int[] found = stop.obstacleCounts();
+        for (int o = 0; o < found.length; o++) {
+            gain -= found[o] * clearTotal[o];
+        }
+        return gain;
+    }
+
+    /**
+     * Returns the number of supplies one step down uses up.
+     * 
+     * @return the number of supplies one step down uses up
+     */
+    public int stepTotal() {
+        return stepTotal;
+    }
+
+    /**
+     * Returns the rejection recorded in MountainMetrics when a supply runs out.
+     * 
+     * @param supply the index of the supply kind
+     * @return the rejection
+     */
+    public MountainMetrics.Rejection rejection(int supply) {
+        return rejections[supply];
+    }
+
+    /**
+     * Returns the rules in the properties format they are loaded from.
+     * 
+     * @return the rules as properties
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("supplies = ").append(String.join(", ", supplies)).append('\n');
+        sb.append("step = ").append(String.join(", ", names(stepCost))).append('\n');
+        for (int o = 0; o < obstacles.length; o++) {
+            sb.append("obstacle.").append(obstacles[o].replace(" ", "\\ "));
+            sb.append(" = ").append(String.join(", ", names(clearCost[o]))).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private List<String> names(int[] counts) {
+        List<String> names = new ArrayList<>();
+        for (int s = 0; s < counts.length; s++) {
+            names.addAll(Collections.nCopies(counts[s], supplies[s]));
+        }
+        return names;
+    }
+
+    /**
+     * Checks whether two sets of rules are the same.
+     * 
+     * @param o the object to compare with
+     * @return true if both list the same supplies and obstacles with the same requirements
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SurvivalRules)) {
+            return false;
+        }
+        SurvivalRules other = (SurvivalRules) o;
+        return Arrays.equals(supplies, other.supplies) && Arrays.equals(obstacles, other.obstacles)
+                && Arrays.equals(stepCost, other.stepCost) && Arrays.deepEquals(clearCost, other.clearCost);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(supplies) + Arrays.deepHashCode(clearCost);
+    }
+}